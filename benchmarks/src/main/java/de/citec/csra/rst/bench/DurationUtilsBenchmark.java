@@ -0,0 +1,66 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.bench;
+
+import de.citec.csra.rst.util.DurationUtils;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DurationUtilsBenchmark {
+
+	@Param({"1500", "2h 30m", "1d 2h 3m 4s 5ms 6µs 7ns", "no duration at all"})
+	public String input;
+
+	private final StringBuilder builder = new StringBuilder(64);
+	private final long duration = 93784005006007L;
+
+	@Benchmark
+	public long parse() {
+		return DurationUtils.parse(input, TimeUnit.MILLISECONDS);
+	}
+
+	@Benchmark
+	public long parseUncached() {
+		return DurationUtils.parseUncached(input, TimeUnit.MILLISECONDS);
+	}
+
+	@Benchmark
+	public StringBuilder format() {
+		builder.setLength(0);
+		return DurationUtils.format(duration, TimeUnit.NANOSECONDS, builder);
+	}
+
+	@Benchmark
+	public String formatConcat() {
+		return duration / 3600000000000L + "h " + duration % 3600000000000L / 60000000000L + "m";
+	}
+}
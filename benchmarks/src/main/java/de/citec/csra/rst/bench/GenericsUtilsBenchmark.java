@@ -0,0 +1,135 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.bench;
+
+import de.citec.csra.rst.util.GenericsUtils;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rst.generic.KeyValuePairType.KeyValuePair;
+import rst.generic.ValueType.Value;
+
+/**
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GenericsUtilsBenchmark {
+
+	@Param({"null", "string", "int", "long", "double", "bool"})
+	public String kind;
+
+	@Param({"100"})
+	public int arraySize;
+
+	private Object object;
+	private Value array;
+	private long[] longs;
+	private Map<String, Object> map;
+	private List<KeyValuePair> pairs;
+
+	@Setup
+	public void setup() {
+		switch (kind) {
+			case "string":
+				object = "some value";
+				break;
+			case "int":
+				object = 42;
+				break;
+			case "long":
+				object = 42L;
+				break;
+			case "double":
+				object = 42.0;
+				break;
+			case "bool":
+				object = true;
+				break;
+			default:
+				object = null;
+		}
+		Value.Builder bld = Value.newBuilder().setType(Value.Type.ARRAY);
+		for (int i = 0; i < arraySize; i++) {
+			bld.addArray(Value.newBuilder().setType(Value.Type.INT).setInt(i));
+		}
+		array = bld.build();
+		longs = GenericsUtils.valueToLongArray(array);
+		map = new LinkedHashMap<>();
+		for (int i = 0; i < arraySize; i++) {
+			map.put("key" + i, object);
+		}
+		pairs = GenericsUtils.toKeyValuePairs(map);
+	}
+
+	@Benchmark
+	public Value objectToValue() {
+		return GenericsUtils.objectToValue(object);
+	}
+
+	@Benchmark
+	public KeyValuePair getKeyValuePair() {
+		return GenericsUtils.getKeyValuePair("key", object);
+	}
+
+	@Benchmark
+	public Object valueToObject() {
+		return GenericsUtils.valueToObject(array);
+	}
+
+	@Benchmark
+	public List<KeyValuePair> toKeyValuePairs() {
+		return GenericsUtils.toKeyValuePairs(map);
+	}
+
+	@Benchmark
+	public Map<String, Object> toMap() {
+		return GenericsUtils.toMap(pairs);
+	}
+
+	@Benchmark
+	public long[] valueToLongArray() {
+		return GenericsUtils.valueToLongArray(array);
+	}
+
+	@Benchmark
+	public long sumLongView() {
+		GenericsUtils.LongView view = GenericsUtils.asLongList(array);
+		long sum = 0;
+		for (int i = 0; i < view.size(); i++) {
+			sum += view.getLong(i);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public Value arrayToValue() {
+		return GenericsUtils.arrayToValue(longs);
+	}
+}
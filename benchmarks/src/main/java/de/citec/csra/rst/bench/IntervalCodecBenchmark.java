@@ -0,0 +1,101 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.bench;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import de.citec.csra.rst.util.IntervalCodec;
+import de.citec.csra.rst.util.PrimitiveIntervals;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rst.timing.IntervalType.Interval;
+
+/**
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntervalCodecBenchmark {
+
+	@Param({"16", "1024"})
+	public int size;
+
+	private List<Interval> intervals;
+	private ByteBuffer encoded;
+	private ByteString messages;
+	private long[] begins;
+	private long[] ends;
+
+	@Setup
+	public void setup() throws IOException {
+		intervals = new ArrayList<>(size);
+		long time = 1500000000000000L;
+		for (int i = 0; i < size; i++) {
+			time += 1000000;
+			intervals.add(PrimitiveIntervals.toRst(time, time + 500000));
+		}
+		encoded = ByteBuffer.wrap(IntervalCodec.encode(intervals, 64));
+		ByteString.Output out = ByteString.newOutput();
+		for (Interval i : intervals) {
+			i.writeDelimitedTo(out);
+		}
+		messages = out.toByteString();
+		begins = new long[size];
+		ends = new long[size];
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return IntervalCodec.encode(intervals, 64);
+	}
+
+	@Benchmark
+	public int decodePrimitive() {
+		return IntervalCodec.decode(encoded, begins, ends);
+	}
+
+	@Benchmark
+	public List<Interval> decodeIntervals() {
+		return IntervalCodec.decode(encoded);
+	}
+
+	@Benchmark
+	public List<Interval> decodeMessages() throws IOException {
+		List<Interval> decoded = new ArrayList<>(size);
+		CodedInputStream in = messages.newCodedInput();
+		while (!in.isAtEnd()) {
+			int limit = in.pushLimit(in.readRawVarint32());
+			decoded.add(Interval.parseFrom(in));
+			in.popLimit(limit);
+		}
+		return decoded;
+	}
+}
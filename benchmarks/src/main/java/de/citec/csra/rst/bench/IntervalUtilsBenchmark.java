@@ -0,0 +1,171 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.bench;
+
+import de.citec.csra.rst.util.CoarseTimeSource;
+import de.citec.csra.rst.util.FreeTime;
+import de.citec.csra.rst.util.IntervalUtils;
+import de.citec.csra.rst.util.TimeSource;
+import de.citec.csra.rst.util.Timeline;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import net.time4j.range.MomentInterval;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rst.timing.IntervalType.Interval;
+
+/**
+ * Free-slot queries against a resource that is booked in regular one second
+ * blocks with one second gaps, in random order. The goal lies in the middle
+ * of the range so that every query has to skip half of the blocks.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IntervalUtilsBenchmark {
+
+	private final static long SECOND = 1000000;
+	private final static int GOALS = 16;
+
+	@Param({"0", "10", "100", "1000"})
+	public int blocks;
+
+	private List<Interval> blockList;
+	private List<MomentInterval> momentList;
+	private Interval goal;
+	private Interval range;
+	private MomentInterval momentGoal;
+	private MomentInterval momentRange;
+	private List<Interval> goals;
+	private List<Interval> ranges;
+	private Timeline timeline;
+	private FreeTime freeTime;
+
+	@Setup
+	public void setup() {
+		long now = IntervalUtils.currentTimeInMicros() + 60 * SECOND;
+		blockList = new ArrayList<>(blocks);
+		for (int i = 0; i < blocks; i++) {
+			blockList.add(IntervalUtils.buildRst(now + 2 * i * SECOND, now + (2 * i + 1) * SECOND, MICROSECONDS));
+		}
+		Collections.shuffle(blockList);
+		momentList = IntervalUtils.fromRst(blockList);
+
+		long middle = now + blocks * SECOND;
+		goal = IntervalUtils.buildRst(middle, middle + 3 * SECOND, MICROSECONDS);
+		range = IntervalUtils.buildRst(now, now + 2 * blocks * SECOND + 10 * SECOND, MICROSECONDS);
+		momentGoal = IntervalUtils.fromRst(goal);
+		momentRange = IntervalUtils.fromRst(range);
+
+		goals = new ArrayList<>(GOALS);
+		ranges = new ArrayList<>(GOALS);
+		for (int i = 0; i < GOALS; i++) {
+			long begin = now + i * blocks * SECOND / GOALS;
+			goals.add(IntervalUtils.buildRst(begin, begin + 3 * SECOND, MICROSECONDS));
+			ranges.add(range);
+		}
+
+		timeline = new Timeline();
+		timeline.setAutoExpire(false);
+		for (Interval block : blockList) {
+			timeline.add(block);
+		}
+		freeTime = FreeTime.of(blockList);
+	}
+
+	@Benchmark
+	public Interval findFirst() {
+		return IntervalUtils.findFirst(goal, range, blockList);
+	}
+
+	@Benchmark
+	public Interval findMax() {
+		return IntervalUtils.findMax(goal, range, blockList);
+	}
+
+	@Benchmark
+	public Interval findComplete() {
+		return IntervalUtils.findComplete(goal, range, blockList);
+	}
+
+	@Benchmark
+	public Interval findRemaining() {
+		return IntervalUtils.findRemaining(range, blockList);
+	}
+
+	@Benchmark
+	public Interval findRemainingCoarse() {
+		return IntervalUtils.findRemaining(range, blockList, CoarseTimeSource.getShared());
+	}
+
+	@Benchmark
+	public long preciseTime() {
+		return TimeSource.PRECISE.currentTimeInMicros();
+	}
+
+	@Benchmark
+	public long coarseTime() {
+		return CoarseTimeSource.getShared().currentTimeInMicros();
+	}
+
+	@Benchmark
+	public MomentInterval findFirstMoment() {
+		return IntervalUtils.findFirst(momentGoal, momentRange, momentList);
+	}
+
+	@Benchmark
+	public MomentInterval findMaxMoment() {
+		return IntervalUtils.findMax(momentGoal, momentRange, momentList);
+	}
+
+	@Benchmark
+	public List<Interval> findFirstAll() {
+		return IntervalUtils.findFirstAll(goals, ranges, blockList);
+	}
+
+	@Benchmark
+	public Interval findFirstFreeTime() {
+		return freeTime.findFirstAll(goals, ranges).get(0);
+	}
+
+	@Benchmark
+	public Interval findFirstTimeline() {
+		return timeline.findFirst(goal, range);
+	}
+
+	@Benchmark
+	public Interval findMaxTimeline() {
+		return timeline.findMax(goal, range);
+	}
+
+	@Benchmark
+	public List<MomentInterval> fromRst() {
+		return IntervalUtils.fromRst(blockList);
+	}
+}
@@ -0,0 +1,93 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.bench;
+
+import de.citec.csra.rst.parse.EnumParser;
+import de.citec.csra.rst.parse.PayloadParser;
+import de.citec.csra.rst.parse.ScopeParser;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rsb.InitializeException;
+import rst.communicationpatterns.ResourceAllocationType.ResourceAllocation.Priority;
+
+/**
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParserBenchmark {
+
+	@Param({"HIGH:/a/;/b/%LOW:/c/", "HIGH:/a/;/b/;/c/;/d/%LOW:/e/;/f/%NORMAL:/g/%URGENT:/h/;/i/", "HIGH:/a/::%:%LOW:;;"})
+	public String payload;
+
+	@Param({"normal", "invalid"})
+	public String priority;
+
+	private EnumParser<Priority> enums;
+	private ScopeParser scopes;
+	private PayloadParser<rsb.Scope, Priority> parser;
+	private Map<String, String> parsed;
+
+	@Setup
+	public void setup() throws InitializeException {
+		enums = new EnumParser<>(Priority.class);
+		scopes = new ScopeParser();
+		parser = new PayloadParser<rsb.Scope, Priority>("", scopes, enums) {
+		};
+		parsed = parser.parsePayload(payload);
+	}
+
+	@Benchmark
+	public Object parseEnum() {
+		try {
+			return enums.getValue(priority);
+		} catch (IllegalArgumentException ex) {
+			return ex;
+		}
+	}
+
+	@Benchmark
+	public rsb.Scope parseScope() {
+		return scopes.getValue("/some/nested/scope/");
+	}
+
+	@Benchmark
+	public Map<String, String> parsePayload() {
+		return parser.parsePayload(payload);
+	}
+
+	@Benchmark
+	public Map<rsb.Scope, Priority> parseConfiguration() throws Exception {
+		return parser.parseConfiguration(parsed);
+	}
+
+	@Benchmark
+	public Map<rsb.Scope, Priority> parse() {
+		return parser.parse(payload);
+	}
+}
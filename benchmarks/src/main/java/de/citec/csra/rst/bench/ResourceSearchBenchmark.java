@@ -0,0 +1,107 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.bench;
+
+import de.citec.csra.rst.util.IntervalUtils;
+import de.citec.csra.rst.util.ResourceSearch;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rst.timing.IntervalType.Interval;
+
+/**
+ * Earliest free slot among many resources, each booked like the resource in
+ * {@link IntervalUtilsBenchmark} but shifted a little, so that a different
+ * resource wins than the first one. The sequential loop is the baseline for
+ * the fork-join search.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ResourceSearchBenchmark {
+
+	private final static long SECOND = 1000000;
+
+	@Param({"10", "200"})
+	public int resources;
+
+	@Param({"100", "1000"})
+	public int blocks;
+
+	@Param({"1", "8", "32"})
+	public int threshold;
+
+	private Map<String, List<Interval>> blockMap;
+	private Interval goal;
+	private Interval range;
+
+	@Setup
+	public void setup() {
+		long now = IntervalUtils.currentTimeInMicros() + 60 * SECOND;
+		blockMap = new LinkedHashMap<>();
+		for (int r = 0; r < resources; r++) {
+			long shift = (resources - r) * SECOND / resources;
+			List<Interval> list = new ArrayList<>(blocks);
+			for (int i = 0; i < blocks; i++) {
+				list.add(IntervalUtils.buildRst(now + shift + 2 * i * SECOND, now + shift + (2 * i + 1) * SECOND, MICROSECONDS));
+			}
+			Collections.shuffle(list);
+			blockMap.put("resource-" + r, list);
+		}
+		long middle = now + blocks * SECOND;
+		goal = IntervalUtils.buildRst(middle, middle + 3 * SECOND, MICROSECONDS);
+		range = IntervalUtils.buildRst(now, now + 2 * blocks * SECOND + 10 * SECOND, MICROSECONDS);
+	}
+
+	@Benchmark
+	public Interval findFirstLoop() {
+		Interval best = null;
+		for (List<Interval> list : blockMap.values()) {
+			Interval found = IntervalUtils.findFirst(goal, range, list);
+			if (found != null && (best == null || found.getBegin().getTime() < best.getBegin().getTime())) {
+				best = found;
+			}
+		}
+		return best;
+	}
+
+	@Benchmark
+	public Map.Entry<String, Interval> findFirstParallel() {
+		return ResourceSearch.findFirst(goal, range, blockMap, ForkJoinPool.commonPool(), threshold);
+	}
+
+	@Benchmark
+	public Map.Entry<String, Interval> findMaxParallel() {
+		return ResourceSearch.findMax(goal, range, blockMap, ForkJoinPool.commonPool(), threshold);
+	}
+}
@@ -0,0 +1,141 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.bench;
+
+import com.google.protobuf.ByteString;
+import de.citec.csra.rst.util.LazyPayload;
+import de.citec.csra.rst.util.SerializationService;
+import de.citec.csra.rst.util.TaskStateUtils;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import rsb.InitializeException;
+import rsb.converter.DefaultConverterRepository;
+import rsb.converter.ProtocolBufferConverter;
+import rst.communicationpatterns.TaskStateType.TaskState;
+import rst.generic.ValueType.Value;
+
+/**
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationServiceBenchmark {
+
+	private final static int BATCH = 512;
+
+	@Param({"16", "1024", "65536"})
+	public int size;
+
+	private SerializationService<Value> service;
+	private Value payload;
+	private ByteString serialized;
+	private List<Value> batch;
+	private ByteBuffer frames;
+	private TaskState task;
+
+	@Setup
+	public void setup() throws InitializeException {
+		DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(Value.getDefaultInstance()));
+		byte[] bytes = new byte[size];
+		new Random(size).nextBytes(bytes);
+		payload = Value.newBuilder().setType(Value.Type.BINARY).setBinary(ByteString.copyFrom(bytes)).build();
+		service = new SerializationService<>(Value.class);
+		serialized = service.serialize(payload);
+		batch = new ArrayList<>(Collections.nCopies(BATCH, payload));
+		frames = service.serializeAll(batch);
+		task = TaskStateUtils.build(TaskState.State.UPDATE, payload);
+	}
+
+	@Benchmark
+	public ByteString serialize() {
+		return service.serialize(payload);
+	}
+
+	@Benchmark
+	public Value deserialize() {
+		return service.deserialize(serialized);
+	}
+
+	@Benchmark
+	public List<ByteString> serializeEach() {
+		List<ByteString> all = new ArrayList<>(BATCH);
+		for (Value v : batch) {
+			all.add(service.serialize(v));
+		}
+		return all;
+	}
+
+	@Benchmark
+	public ByteBuffer serializeAll() {
+		return service.serializeAll(batch);
+	}
+
+	@Benchmark
+	public ByteBuffer serializeAllParallel() {
+		return service.serializeAll(batch, true);
+	}
+
+	@Benchmark
+	public List<Value> deserializeAll() {
+		return service.deserializeAll(frames);
+	}
+
+	@Benchmark
+	public SerializationService<Value> lookup() throws InitializeException {
+		return new SerializationService<>(Value.class);
+	}
+
+	@Benchmark
+	public SerializationService<Value> sharedLookup() throws InitializeException {
+		return SerializationService.forType(Value.class);
+	}
+
+	@Benchmark
+	public TaskState taskState() throws InitializeException {
+		return TaskStateUtils.build(TaskState.State.UPDATE, payload);
+	}
+
+	@Benchmark
+	public Value taskPayloadEager() {
+		return new SerializationService<Value>(task.getWireSchema().toStringUtf8()).deserialize(task.getPayload());
+	}
+
+	@Benchmark
+	public Value taskPayloadLazy() {
+		return TaskStateUtils.<Value>payload(task).get();
+	}
+
+	@Benchmark
+	public TaskState.State taskStateOnly() {
+		LazyPayload<Value> lazy = TaskStateUtils.payload(task);
+		return lazy.getState();
+	}
+}
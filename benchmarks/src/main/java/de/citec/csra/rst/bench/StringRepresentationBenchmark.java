@@ -0,0 +1,92 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.bench;
+
+import de.citec.csra.rst.util.IntervalUtils;
+import de.citec.csra.rst.util.StringRepresentation;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rst.communicationpatterns.ResourceAllocationType.ResourceAllocation;
+import rst.timing.IntervalType.Interval;
+
+/**
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StringRepresentationBenchmark {
+
+	private final static Logger LOG = Logger.getLogger(StringRepresentationBenchmark.class.getName());
+
+	private Interval interval;
+	private ResourceAllocation allocation;
+
+	@Setup
+	public void setup() {
+		interval = IntervalUtils.buildRelativeRst(1, 5, SECONDS);
+		allocation = ResourceAllocation.newBuilder().
+				setId("allocation").
+				setState(ResourceAllocation.State.REQUESTED).
+				setPolicy(ResourceAllocation.Policy.FIRST).
+				setPriority(ResourceAllocation.Priority.NORMAL).
+				setInitiator(ResourceAllocation.Initiator.HUMAN).
+				setDescription("benchmark").
+				setSlot(interval).
+				addResourceIds("/first/resource").
+				addResourceIds("/second/resource").
+				build();
+	}
+
+	@Benchmark
+	public String shortStringInterval() {
+		return StringRepresentation.shortString(interval);
+	}
+
+	@Benchmark
+	public String shortStringAllocation() {
+		return StringRepresentation.shortString(allocation);
+	}
+
+	@Benchmark
+	public String shortStringObject() {
+		return StringRepresentation.shortString((Object) allocation);
+	}
+
+	@Benchmark
+	public void disabledLogEager() {
+		LOG.log(Level.FINEST, "Allocation ''{0}''", StringRepresentation.shortString(allocation));
+	}
+
+	@Benchmark
+	public void disabledLogLazy() {
+		if (LOG.isLoggable(Level.FINEST)) {
+			LOG.log(Level.FINEST, "Allocation ''{0}''", StringRepresentation.lazyString(allocation));
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.bench;
+
+import de.citec.csra.rst.util.TaskStateUtils;
+import de.citec.csra.rst.util.TaskTracker;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import rst.communicationpatterns.TaskStateType.TaskState;
+
+/**
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TaskTrackerBenchmark {
+
+	private final TaskTracker<Long> tracker = new TaskTracker<>(1 << 16);
+	private final AtomicLong ids = new AtomicLong();
+
+	@Benchmark
+	public TaskState buildTemplate() {
+		return TaskStateUtils.build(TaskState.State.ACCEPTED);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public TaskState lifecycle() {
+		Long id = ids.incrementAndGet();
+		tracker.initiate(id);
+		tracker.transition(id, TaskState.State.ACCEPTED);
+		tracker.transition(id, TaskState.State.UPDATE);
+		return tracker.transition(id, TaskState.State.COMPLETED);
+	}
+}
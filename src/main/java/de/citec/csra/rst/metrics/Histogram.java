@@ -0,0 +1,161 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values with logarithmic buckets in the
+ * style of HdrHistogram. Values below {@code 2 * SUB_BUCKETS} are counted
+ * exactly, larger values fall into buckets whose width is at most
+ * {@code 1 / SUB_BUCKETS} of their lower bound, so percentiles have a
+ * relative error of about three percent over the whole {@code long} range.
+ * Values are dropped while metrics are disabled.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class Histogram {
+
+	private final static int SUB_BITS = 5;
+	private final static int SUB_BUCKETS = 1 << SUB_BITS;
+	private final static int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	Histogram(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Records a single value, negative values are recorded as 0.
+	 *
+	 * @param value the value to record.
+	 */
+	public void record(long value) {
+		if (Metrics.enabled) {
+			value = Math.max(0, value);
+			buckets.incrementAndGet(index(value));
+			count.increment();
+			sum.add(value);
+			if (value > max.get()) {
+				max.accumulateAndGet(value, Math::max);
+			}
+			Metrics.recorded(this, value);
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile. The bound is exact for
+	 * small values and overestimates large ones by at most the bucket width.
+	 *
+	 * @param percentile the percentile between 0 and 100.
+	 * @return the upper bound of the bucket containing the percentile, or 0
+	 * if nothing has been recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += buckets.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(upper(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Summarizes the histogram with count, mean, max and common percentiles.
+	 *
+	 * @return an ordered map from statistic to value.
+	 */
+	public Map<String, Long> snapshot() {
+		Map<String, Long> stats = new LinkedHashMap<>();
+		stats.put("count", getCount());
+		stats.put("mean", Math.round(getMean()));
+		stats.put("p50", getPercentile(50));
+		stats.put("p90", getPercentile(90));
+		stats.put("p99", getPercentile(99));
+		stats.put("p999", getPercentile(99.9));
+		stats.put("max", getMax());
+		return stats;
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return name + snapshot();
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	static long upper(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lower = (long) (index - shift * SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1;
+	}
+}
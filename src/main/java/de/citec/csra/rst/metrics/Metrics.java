@@ -0,0 +1,233 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and histograms of the hot paths in this library. Recording is
+ * disabled by default and then only costs a read of a volatile flag. Set the
+ * system property {@code rst.metrics} to {@code true} or call
+ * {@link #setEnabled(boolean)} to start recording, and
+ * {@link #registerMBean()} to expose the values via JMX.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class Metrics {
+
+	private final static Logger LOG = Logger.getLogger(Metrics.class.getName());
+	private final static long OFF = Long.MIN_VALUE;
+
+	public final static String OBJECT_NAME = "de.citec.csra.rst:type=Metrics";
+
+	static volatile boolean enabled = Boolean.getBoolean("rst.metrics");
+	private static volatile MetricsListener[] listeners = load();
+
+	public final static Counter DURATION_HITS = new Counter("duration.hits");
+	public final static Counter DURATION_MISSES = new Counter("duration.misses");
+	public final static Counter DURATION_FALLBACKS = new Counter("duration.fallbacks");
+	public final static Counter TYPES_HITS = new Counter("types.hits");
+	public final static Counter TYPES_MISSES = new Counter("types.misses");
+	public final static Counter TYPES_UNRESOLVED = new Counter("types.unresolved");
+	public final static Counter CONVERSION_FAILURES = new Counter("conversion.failures");
+
+	public final static Histogram QUERY_LATENCY = new Histogram("query.latency");
+	public final static Histogram QUERY_BLOCKS = new Histogram("query.blocks");
+	public final static Histogram SERIALIZED_BYTES = new Histogram("serialized.bytes");
+	public final static Histogram DESERIALIZED_BYTES = new Histogram("deserialized.bytes");
+
+	private final static Counter[] COUNTERS = {DURATION_HITS, DURATION_MISSES, DURATION_FALLBACKS,
+		TYPES_HITS, TYPES_MISSES, TYPES_UNRESOLVED, CONVERSION_FAILURES};
+	private final static Histogram[] HISTOGRAMS = {QUERY_LATENCY, QUERY_BLOCKS, SERIALIZED_BYTES, DESERIALIZED_BYTES};
+
+	static {
+		if (Boolean.getBoolean("rst.metrics.jmx")) {
+			registerMBean();
+		}
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		Metrics.enabled = enabled;
+	}
+
+	public static synchronized void addListener(MetricsListener listener) {
+		MetricsListener[] current = listeners;
+		MetricsListener[] next = Arrays.copyOf(current, current.length + 1);
+		next[current.length] = listener;
+		listeners = next;
+	}
+
+	public static synchronized void removeListener(MetricsListener listener) {
+		MetricsListener[] current = listeners;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] == listener) {
+				MetricsListener[] next = new MetricsListener[current.length - 1];
+				System.arraycopy(current, 0, next, 0, i);
+				System.arraycopy(current, i + 1, next, i, next.length - i);
+				listeners = next;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Starts timing a query.
+	 *
+	 * @return a token to pass to {@link #queried(String, int, long)}.
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : OFF;
+	}
+
+	/**
+	 * Records the latency of a query started with {@link #start()}.
+	 *
+	 * @param query the name of the query method.
+	 * @param blocks the number of blocks the query was answered against.
+	 * @param start the token returned by {@link #start()}.
+	 */
+	public static void queried(String query, int blocks, long start) {
+		if (start == OFF || !enabled) {
+			return;
+		}
+		long nanos = System.nanoTime() - start;
+		QUERY_LATENCY.record(nanos);
+		QUERY_BLOCKS.record(blocks);
+		for (MetricsListener l : listeners) {
+			l.queried(query, blocks, nanos);
+		}
+	}
+
+	public static Map<String, Long> getCounters() {
+		Map<String, Long> values = new LinkedHashMap<>();
+		for (Counter c : COUNTERS) {
+			values.put(c.getName(), c.get());
+		}
+		return values;
+	}
+
+	public static void reset() {
+		for (Counter c : COUNTERS) {
+			c.reset();
+		}
+		for (Histogram h : HISTOGRAMS) {
+			h.reset();
+		}
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server under
+	 * {@link #OBJECT_NAME}. Repeated registrations are ignored.
+	 *
+	 * @return whether the metrics are registered afterwards.
+	 */
+	public static boolean registerMBean() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+			return true;
+		} catch (InstanceAlreadyExistsException ex) {
+			return true;
+		} catch (JMException | SecurityException ex) {
+			LOG.log(Level.WARNING, "Could not register metrics as ''{0}'' ({1}).", new Object[]{OBJECT_NAME, ex});
+			return false;
+		}
+	}
+
+	static void counted(Counter counter, long delta) {
+		for (MetricsListener l : listeners) {
+			l.counted(counter, delta);
+		}
+	}
+
+	static void recorded(Histogram histogram, long value) {
+		for (MetricsListener l : listeners) {
+			l.recorded(histogram, value);
+		}
+	}
+
+	private static MetricsListener[] load() {
+		MetricsListener[] found = new MetricsListener[0];
+		try {
+			for (MetricsListener l : ServiceLoader.load(MetricsListener.class)) {
+				found = Arrays.copyOf(found, found.length + 1);
+				found[found.length - 1] = l;
+				LOG.log(Level.FINE, "Loaded metrics listener ''{0}''.", l.getClass().getName());
+			}
+		} catch (ServiceConfigurationError ex) {
+			LOG.log(Level.WARNING, "Could not load metrics listeners ({0}).", ex);
+		}
+		return found;
+	}
+
+	private static class Bean implements MetricsMXBean {
+
+		@Override
+		public boolean isEnabled() {
+			return Metrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			Metrics.setEnabled(enabled);
+		}
+
+		@Override
+		public Map<String, Long> getCounters() {
+			return Metrics.getCounters();
+		}
+
+		@Override
+		public Map<String, Long> getQueryLatency() {
+			return QUERY_LATENCY.snapshot();
+		}
+
+		@Override
+		public Map<String, Long> getQueryBlocks() {
+			return QUERY_BLOCKS.snapshot();
+		}
+
+		@Override
+		public Map<String, Long> getSerializedBytes() {
+			return SERIALIZED_BYTES.snapshot();
+		}
+
+		@Override
+		public Map<String, Long> getDeserializedBytes() {
+			return DESERIALIZED_BYTES.snapshot();
+		}
+
+		@Override
+		public void reset() {
+			Metrics.reset();
+		}
+	}
+}
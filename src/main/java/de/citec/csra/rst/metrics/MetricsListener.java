@@ -0,0 +1,47 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.metrics;
+
+/**
+ * Receives metric events as they are recorded. Implementations are either
+ * added with {@link Metrics#addListener(MetricsListener)} or discovered
+ * through {@link java.util.ServiceLoader} when listed in
+ * {@code META-INF/services/de.citec.csra.rst.metrics.MetricsListener}.
+ * Callbacks run synchronously on the recording thread and must be cheap and
+ * thread-safe. No callbacks are made while metrics are disabled.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public interface MetricsListener {
+
+	default void counted(Counter counter, long delta) {
+	}
+
+	default void recorded(Histogram histogram, long value) {
+	}
+
+	/**
+	 * Called after an interval query has been answered.
+	 *
+	 * @param query the name of the query method.
+	 * @param blocks the number of blocks the query was answered against.
+	 * @param nanos the time the query took in nanoseconds.
+	 */
+	default void queried(String query, int blocks, long nanos) {
+	}
+}
@@ -0,0 +1,45 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link Metrics}, registered with the platform
+ * MBean server by {@link Metrics#registerMBean()}.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public interface MetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	Map<String, Long> getCounters();
+
+	Map<String, Long> getQueryLatency();
+
+	Map<String, Long> getQueryBlocks();
+
+	Map<String, Long> getSerializedBytes();
+
+	Map<String, Long> getDeserializedBytes();
+
+	void reset();
+}
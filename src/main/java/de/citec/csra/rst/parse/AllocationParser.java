@@ -30,39 +30,48 @@ import rst.timing.IntervalType.Interval;
 @Deprecated
 public class AllocationParser implements StringParser<ResourceAllocation> {
 
+	private final static Priority[] PRIORITIES = Priority.values();
+	private final static Policy[] POLICIES = Policy.values();
+
 	@Override
 	public ResourceAllocation getValue(String msc) throws IllegalArgumentException {
-		String[] split = msc.split(",");
+		return getValue(msc, 0, msc.length());
+	}
+
+	@Override
+	public ResourceAllocation getValue(CharSequence seq, int start, int end) throws IllegalArgumentException {
+		int last = CharSequences.trimEnd(seq, ',', start, end);
 
 		StringBuilder tgt = new StringBuilder("");
+		long[] number = new long[1];
 		long duration = -1;
 		Policy pol = null;
 		Priority pri = null;
 
-		for (int i = 0; i < split.length; i++) {
-			String s = split[i];
-			try {
-				duration = Long.valueOf(s);
-				split[i] = null;
-			} catch (NumberFormatException ex) {
+		for (int from = start; from <= last; ) {
+			int to = CharSequences.indexOf(seq, ',', from, last);
+			boolean matched = false;
+			if (CharSequences.parseLong(seq, from, to, number)) {
+				duration = number[0];
+				matched = true;
 			}
-			try {
-				pri = Priority.valueOf(s);
-				split[i] = null;
-			} catch (IllegalArgumentException ex) {
+			for (Priority p : PRIORITIES) {
+				if (CharSequences.equals(seq, from, to, p.name())) {
+					pri = p;
+					matched = true;
+				}
 			}
-			try {
-				pol = Policy.valueOf(s);
-				split[i] = null;
-			} catch (IllegalArgumentException ex) {
+			for (Policy p : POLICIES) {
+				if (CharSequences.equals(seq, from, to, p.name())) {
+					pol = p;
+					matched = true;
+				}
 			}
-		}
-
-		for (String s : split) {
-			if (s != null) {
-				tgt.append(s);
+			if (!matched) {
+				tgt.append(seq, from, to);
 				tgt.append(",");
 			}
+			from = to + 1;
 		}
 
 		if (duration == -1 || tgt.length() == 0 || pol == null || pri == null) {
@@ -88,15 +97,20 @@ public class AllocationParser implements StringParser<ResourceAllocation> {
 	@Override
 	public String getString(ResourceAllocation obj) {
 		StringBuilder bld = new StringBuilder();
-		bld.append(String.valueOf(obj.getSlot().getEnd().getTime() - obj.getSlot().getBegin().getTime())).
+		appendString(obj, bld);
+		return bld.toString();
+	}
+
+	@Override
+	public void appendString(ResourceAllocation obj, StringBuilder out) {
+		out.append(obj.getSlot().getEnd().getTime() - obj.getSlot().getBegin().getTime()).
 				append(",").
 				append(obj.getPriority()).
 				append(",").
 				append(obj.getPolicy());
 		for (String resource : obj.getResourceIdsList()) {
-			bld.append(",").
+			out.append(",").
 			append(resource);
 		}
-		return bld.toString();
 	}
 }
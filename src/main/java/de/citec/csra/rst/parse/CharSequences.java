@@ -0,0 +1,151 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.parse;
+
+/**
+ * Helpers for parsers that work on regions of a {@link CharSequence}.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+class CharSequences {
+
+	private final static int FLOAT_EXACT = 1 << 24;
+	private final static float[] POWERS = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+	/**
+	 * Index of the first occurrence of the character in {@code [from, to)},
+	 * or {@code to} if there is none.
+	 */
+	static int indexOf(CharSequence seq, char c, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (seq.charAt(i) == c) {
+				return i;
+			}
+		}
+		return to;
+	}
+
+	/**
+	 * End of the region after removing trailing separators, which mirrors
+	 * how {@link String#split(java.lang.String)} drops trailing empty parts.
+	 */
+	static int trimEnd(CharSequence seq, char sep, int from, int to) {
+		while (to > from && seq.charAt(to - 1) == sep) {
+			to--;
+		}
+		return to;
+	}
+
+	/**
+	 * Compares the region with the given string, respecting case.
+	 */
+	static boolean equals(CharSequence seq, int from, int to, String str) {
+		if (to - from != str.length()) {
+			return false;
+		}
+		for (int i = from; i < to; i++) {
+			if (seq.charAt(i) != str.charAt(i - from)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a decimal number like {@link Long#parseLong(java.lang.String)}
+	 * without copying the region.
+	 */
+	static long parseLong(CharSequence seq, int from, int to) throws NumberFormatException {
+		long[] value = new long[1];
+		if (!parseLong(seq, from, to, value)) {
+			throw new NumberFormatException("For input string: \"" + seq.subSequence(from, to) + "\"");
+		}
+		return value[0];
+	}
+
+	/**
+	 * Parses a decimal number like {@link Long#parseLong(java.lang.String)}
+	 * without copying the region and without throwing.
+	 *
+	 * @return whether the region holds a valid number, which is then stored
+	 * in {@code value[0]}.
+	 */
+	static boolean parseLong(CharSequence seq, int from, int to, long[] value) {
+		if (from >= to) {
+			return false;
+		}
+		int i = from;
+		boolean negative = false;
+		char first = seq.charAt(i);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			if (++i == to) {
+				return false;
+			}
+		}
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long result = 0;
+		for (; i < to; i++) {
+			int digit = Character.digit(seq.charAt(i), 10);
+			if (digit < 0 || result < (limit + digit) / 10) {
+				return false;
+			}
+			result = result * 10 - digit;
+		}
+		value[0] = negative ? result : -result;
+		return true;
+	}
+
+	/**
+	 * Parses a number like {@link Float#valueOf(java.lang.String)}. Plain
+	 * decimals with at most 24 bits of digits and ten fraction digits are
+	 * converted from the region directly, which is exact because both the
+	 * digits and the power of ten are representable as floats and a single
+	 * division rounds correctly. Other inputs are parsed from a copy.
+	 */
+	static float parseFloat(CharSequence seq, int from, int to) throws NumberFormatException {
+		int i = from;
+		boolean negative = false;
+		if (i < to && (seq.charAt(i) == '-' || seq.charAt(i) == '+')) {
+			negative = seq.charAt(i++) == '-';
+		}
+		int digits = 0;
+		int scale = -1;
+		int mantissa = 0;
+		for (; i < to; i++) {
+			char c = seq.charAt(i);
+			if (c == '.' && scale < 0 && digits > 0) {
+				scale = 0;
+				continue;
+			}
+			if (c < '0' || c > '9' || mantissa > (FLOAT_EXACT - (c - '0')) / 10) {
+				break;
+			}
+			mantissa = mantissa * 10 + (c - '0');
+			digits++;
+			if (scale >= 0) {
+				scale++;
+			}
+		}
+		if (i == to && digits > 0 && scale != 0 && scale < POWERS.length) {
+			float value = scale < 0 ? mantissa : mantissa / POWERS[scale];
+			return negative ? -value : value;
+		}
+		return Float.valueOf(seq.subSequence(from, to).toString());
+	}
+}
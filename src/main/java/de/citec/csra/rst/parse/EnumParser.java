@@ -16,27 +16,103 @@
  */
 package de.citec.csra.rst.parse;
 
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
+ * Parses enum constants by their name, ignoring case. The constants of each
+ * enum class are put into a case-insensitive hash table once, which is
+ * shared by all parsers for that class. Lookups hash the characters
+ * directly and neither copy nor convert the input.
  *
  * @author Patrick Holthaus
  * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
  */
 public class EnumParser<T extends Enum<T>> implements StringParser<T> {
 
+	private final static Map<Class<?>, Enum<?>[]> TABLES = new ConcurrentHashMap<>();
+
 	private final Class<T> cls;
+	private final Enum<?>[] table;
 	
 	public EnumParser(Class<T> cls) {
 		this.cls = cls;
+		this.table = TABLES.computeIfAbsent(cls, EnumParser::table);
+	}
+
+	/**
+	 * Builds an open addressing table with a load factor of at most one half.
+	 */
+	private static Enum<?>[] table(Class<?> cls) {
+		Enum<?>[] values = (Enum<?>[]) cls.getEnumConstants();
+		int size = Integer.highestOneBit(Math.max(1, values.length) * 2) * 2;
+		Enum<?>[] table = new Enum<?>[size];
+		for (Enum<?> e : values) {
+			String name = e.name();
+			int slot = hash(name, 0, name.length()) & (size - 1);
+			while (table[slot] != null) {
+				slot = (slot + 1) & (size - 1);
+			}
+			table[slot] = e;
+		}
+		return table;
+	}
+
+	private static int hash(CharSequence seq, int start, int end) {
+		int h = 0;
+		for (int i = start; i < end; i++) {
+			h = 31 * h + Character.toLowerCase(Character.toUpperCase(seq.charAt(i)));
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean matches(String name, CharSequence seq, int start, int end) {
+		if (name.length() != end - start) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			char a = name.charAt(i - start);
+			char b = seq.charAt(i);
+			if (a != b && Character.toUpperCase(a) != Character.toUpperCase(b)
+					&& Character.toLowerCase(a) != Character.toLowerCase(b)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Looks up a constant without throwing.
+	 *
+	 * @return the matching constant or {@code null}.
+	 */
+	T find(CharSequence seq, int start, int end) {
+		int mask = table.length - 1;
+		for (int slot = hash(seq, start, end) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+			if (matches(table[slot].name(), seq, start, end)) {
+				return cls.cast(table[slot]);
+			}
+		}
+		return null;
 	}
 
 	@Override
 	public T getValue(String val) throws IllegalArgumentException {
-		for(T e : cls.getEnumConstants()){
-			if(e.name().equalsIgnoreCase(val)){
-				return e;
-			}
+		T e = val == null ? null : find(val, 0, val.length());
+		if (e == null) {
+			throw new IllegalArgumentException("No enum constant " + cls.getCanonicalName() + "." + val);
+		}
+		return e;
+	}
+
+	@Override
+	public T getValue(CharSequence seq, int start, int end) throws IllegalArgumentException {
+		T e = find(seq, start, end);
+		if (e == null) {
+			throw new IllegalArgumentException("No enum constant " + cls.getCanonicalName() + "." + seq.subSequence(start, end));
 		}
-		throw new IllegalArgumentException("No enum constant " + cls.getCanonicalName() + "." + val);
+		return e;
 	}
 
 	@Override
@@ -48,4 +124,14 @@ public class EnumParser<T extends Enum<T>> implements StringParser<T> {
 	public String getString(T obj) {
 		return obj.name();
 	}
+
+	@Override
+	public void appendString(T obj, StringBuilder out) {
+		out.append(obj.name());
+	}
+
+	@Override
+	public void appendString(T obj, Appendable out) throws IOException {
+		out.append(obj.name());
+	}
 }
@@ -28,21 +28,34 @@ import rst.timing.DurationType.Duration;
 @Deprecated
 public class HighlightTargetParser implements StringParser<HighlightTarget> {
 
-	EnumParser<HighlightTarget.Modality> mods = new EnumParser<>(HighlightTarget.Modality.class);
+	private final EnumParser<HighlightTarget.Modality> mods = ParserRegistry.getEnum(HighlightTarget.Modality.class);
 
 	@Override
 	public HighlightTarget getValue(String val) {
+		return getValue(val, 0, val.length());
+	}
 
-		String[] tgt = val.split(",");
-		if (tgt.length < 3) {
-			throw new IllegalArgumentException("Illegal highlight target: " + val);
+	@Override
+	public HighlightTarget getValue(CharSequence seq, int start, int end) {
+		int last = CharSequences.trimEnd(seq, ',', start, end);
+		int first = CharSequences.indexOf(seq, ',', start, last);
+		int lastComma = first;
+		for (int i = first + 1; i < last; i++) {
+			if (seq.charAt(i) == ',') {
+				lastComma = i;
+			}
+		}
+		if (first == last || lastComma == first) {
+			throw new IllegalArgumentException("Illegal highlight target: " + seq.subSequence(start, end));
 		}
 
-		HighlightTarget.Builder bld = HighlightTarget.newBuilder().setTargetId(tgt[0]);
-		for (int i = 1; i < tgt.length - 1; i++) {
-			bld.addModality(mods.getValue(tgt[i]));
+		HighlightTarget.Builder bld = HighlightTarget.newBuilder().setTargetId(seq.subSequence(start, first).toString());
+		for (int from = first + 1; from <= lastComma; ) {
+			int to = CharSequences.indexOf(seq, ',', from, lastComma);
+			bld.addModality(mods.getValue(seq, from, to));
+			from = to + 1;
 		}
-		bld.setDuration(Duration.newBuilder().setTime(Long.valueOf(tgt[tgt.length - 1])).build());
+		bld.setDuration(Duration.newBuilder().setTime(CharSequences.parseLong(seq, lastComma + 1, last)).build());
 		return bld.build();
 	}
 
@@ -54,12 +67,17 @@ public class HighlightTargetParser implements StringParser<HighlightTarget> {
 	@Override
 	public String getString(HighlightTarget obj) {
 		StringBuilder bld = new StringBuilder();
-		bld.append(obj.getTargetId()).append(",");
+		appendString(obj, bld);
+		return bld.toString();
+	}
+
+	@Override
+	public void appendString(HighlightTarget obj, StringBuilder out) {
+		out.append(obj.getTargetId()).append(",");
 		for (Modality m : obj.getModalityList()) {
-			bld.append(m.name());
+			out.append(m.name());
 		}
-		bld.append(",").append(obj.getDuration().getTime());
-		return bld.toString();
+		out.append(",").append(obj.getDuration().getTime());
 	}
 
 }
@@ -0,0 +1,107 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.parse;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import rsb.Scope;
+import rst.communicationpatterns.ResourceAllocationType.ResourceAllocation;
+import rst.geometry.SphericalDirectionFloatType.SphericalDirectionFloat;
+import rst.hri.HighlightTargetType.HighlightTarget;
+
+/**
+ * Thread-safe registry of shared {@link StringParser} instances per target
+ * class. Parsers for {@link rsb.Scope} and the message parsers of this
+ * package are known in advance, parsers for enums are created on first use.
+ * Registered parsers must be thread-safe themselves.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class ParserRegistry {
+
+	private final static Map<Class<?>, StringParser<?>> PARSERS = new ConcurrentHashMap<>();
+
+	static {
+		register(new ScopeParser());
+		registerMessageParsers();
+	}
+
+	/**
+	 * The message parsers are deprecated, but remain available to callers
+	 * that look them up by target class.
+	 */
+	@SuppressWarnings("deprecation")
+	private static void registerMessageParsers() {
+		register(new AllocationParser());
+		register(new HighlightTargetParser());
+		register(new SphericalDirectionFloatParser());
+	}
+
+	/**
+	 * Registers a parser for its target class, replacing any parser that has
+	 * been registered for that class before.
+	 *
+	 * @param <T> the target type.
+	 * @param parser the parser to register.
+	 */
+	public static <T> void register(StringParser<T> parser) {
+		PARSERS.put(parser.getTargetClass(), parser);
+	}
+
+	/**
+	 * Returns the shared parser for the given class.
+	 *
+	 * @param <T> the target type.
+	 * @param cls the target class.
+	 * @return the parser for the class.
+	 * @throws IllegalArgumentException if no parser is known for the class.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> StringParser<T> get(Class<T> cls) throws IllegalArgumentException {
+		StringParser<T> parser = (StringParser<T>) PARSERS.get(cls);
+		if (parser == null) {
+			if (!cls.isEnum()) {
+				throw new IllegalArgumentException("No parser registered for " + cls.getCanonicalName());
+			}
+			parser = (StringParser<T>) PARSERS.computeIfAbsent(cls, ParserRegistry::enumParser);
+		}
+		return parser;
+	}
+
+	/**
+	 * Returns the shared parser for the given enum class.
+	 *
+	 * @param <T> the enum type.
+	 * @param cls the enum class.
+	 * @return the parser for the enum.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Enum<T>> EnumParser<T> getEnum(Class<T> cls) {
+		StringParser<T> parser = get(cls);
+		return parser instanceof EnumParser ? (EnumParser<T>) parser : new EnumParser<>(cls);
+	}
+
+	/**
+	 * Creates the parser for a class that is known to be an enum.
+	 */
+	private static <E extends Enum<E>> EnumParser<E> enumParser(Class<?> cls) {
+		@SuppressWarnings("unchecked")
+		Class<E> type = (Class<E>) cls;
+		return new EnumParser<>(type);
+	}
+}
@@ -16,6 +16,7 @@
  */
 package de.citec.csra.rst.parse;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -53,33 +54,139 @@ public abstract class PayloadParser<K, V> {
 	}
 
 
+	/**
+	 * Receives the value and key regions of every valid value specification.
+	 */
+	private interface Sink {
+
+		void accept(String payload, int locFrom, int locTo, int keyFrom, int keyTo);
+	}
+
+	/**
+	 * Splits the payload into value specifications and maps every value to
+	 * its action label. Separators are matched literally.
+	 *
+	 * @param payload the payload to split.
+	 * @return a map from values to action labels.
+	 */
 	public Map<String, String> parsePayload(String payload) {
 		Map<String, String> stringcfg = new HashMap<>();
-		String[] configs = payload.split(partSep);
-		for (String config : configs) {
-			String[] parts = config.split(keySep);
-			if (parts.length != 2) {
-				LOG.log(Level.WARNING, "invalid action specification: ''{0}'', ignoring.", config);
+		scan(payload, (p, locFrom, locTo, keyFrom, keyTo) -> stringcfg.put(p.substring(locFrom, locTo), p.substring(keyFrom, keyTo)));
+		return stringcfg;
+	}
+
+	/**
+	 * Parses the payload directly into typed keys and values, which is
+	 * equivalent to {@code parseConfiguration(parsePayload(payload))} without
+	 * the intermediate string map.
+	 *
+	 * @param payload the payload to parse.
+	 * @return a map from parsed values to parsed action labels.
+	 * @throws IllegalArgumentException if a key or value parser rejects a part.
+	 */
+	public Map<K, V> parse(String payload) throws IllegalArgumentException {
+		Collector collector = new Collector();
+		scan(payload, collector);
+		return collector.parsedcfg;
+	}
+
+	/**
+	 * Collects typed entries, parsing each action label only once for all
+	 * of its values.
+	 */
+	private final class Collector implements Sink {
+
+		private final Map<K, V> parsedcfg = new HashMap<>();
+		private int actionFrom = -1;
+		private V action;
+
+		@Override
+		public void accept(String payload, int locFrom, int locTo, int keyFrom, int keyTo) {
+			if (actionFrom != keyFrom) {
+				action = valuep.getValue(payload, keyFrom, keyTo);
+				actionFrom = keyFrom;
+			}
+			parsedcfg.put(keyp.getValue(payload, locFrom, locTo), action);
+		}
+	}
+
+	private void scan(String payload, Sink sink) {
+		int len = payload.length();
+		if (len == 0) {
+			scanConfig(payload, 0, 0, sink);
+			return;
+		}
+		int end = trimEnd(payload, 0, len, partSep);
+		int from = 0;
+		while (from < end) {
+			int sep = payload.indexOf(partSep, from);
+			int to = (sep < 0 || sep >= end) ? end : sep;
+			scanConfig(payload, from, to, sink);
+			from = to + partSep.length();
+		}
+	}
+
+	private void scanConfig(String payload, int from, int to, Sink sink) {
+		int end = trimEnd(payload, from, to, keySep);
+		int sep = payload.indexOf(keySep, from);
+		if (from == to || end == from || sep < 0 || sep >= end
+				|| (payload.indexOf(keySep, sep + keySep.length()) >= 0 && payload.indexOf(keySep, sep + keySep.length()) < end)) {
+			warn("invalid action specification: ''{0}'', ignoring.", payload, from, to);
+			return;
+		}
+		if (sep == from) {
+			warn("invalid action specification: ''{0}'', ignoring.", payload, from, sep);
+			return;
+		}
+		int valFrom = sep + keySep.length();
+		int valEnd = trimEnd(payload, valFrom, end, valSep);
+		if (valEnd == valFrom) {
+			warn("value empty or invalid: ''{0}'', ignoring.", payload, valFrom, end);
+			return;
+		}
+		int locFrom = valFrom;
+		while (locFrom <= valEnd) {
+			int loc = payload.indexOf(valSep, locFrom);
+			int locTo = (loc < 0 || loc >= valEnd) ? valEnd : loc;
+			if (locTo == locFrom) {
+				warn("invalid value specification: ''{0}'', ignoring.", payload, locFrom, locTo);
 			} else {
-				if (parts[0].length() < 1) {
-					LOG.log(Level.WARNING, "invalid action specification: ''{0}'', ignoring.", parts[0]);
-				} else {
-					String[] locs = parts[1].split(valSep);
-					if (locs.length < 1) {
-						LOG.log(Level.WARNING, "value empty or invalid: ''{0}'', ignoring.", parts[1]);
-					} else {
-						for (String loc : locs) {
-							if (loc.length() < 1) {
-								LOG.log(Level.WARNING, "invalid value specification: ''{0}'', ignoring.", loc);
-							} else {
-								stringcfg.put(loc, parts[0]);
-							}
-						}
-					}
-				}
+				sink.accept(payload, locFrom, locTo, from, sep);
 			}
+			if (locTo == valEnd) {
+				break;
+			}
+			locFrom = locTo + valSep.length();
+		}
+	}
+
+	/**
+	 * End of the region after removing trailing empty parts, which mirrors
+	 * how {@link String#split(java.lang.String)} drops them. Separators are
+	 * matched from left to right like split does, so that separators which
+	 * overlap themselves are found at the same positions.
+	 */
+	private static int trimEnd(String payload, int from, int to, String sep) {
+		int n = sep.length();
+		int end = from;
+		int start = from;
+		while (true) {
+			int at = payload.indexOf(sep, start);
+			int partEnd = (at < 0 || at > to - n) ? to : at;
+			if (partEnd > start) {
+				end = partEnd;
+			}
+			if (partEnd == to) {
+				return end;
+			}
+			start = at + n;
+		}
+	}
+
+	private static void warn(String msg, String payload, int from, int to) {
+		if (LOG.isLoggable(Level.WARNING)) {
+			LOG.log(Level.WARNING, msg, payload.substring(from, to));
 		}
-		return stringcfg;
 	}
 
 	public Map<K, V> parseConfiguration(Map<String, String> cfgs) throws Exception {
@@ -92,6 +199,28 @@ public abstract class PayloadParser<K, V> {
 		return parsedcfg;
 	}
 
+	/**
+	 * Formats a configuration as a payload that {@link #parse(String)} reads
+	 * back into the same map. Every entry is written as its own value
+	 * specification.
+	 *
+	 * @param cfg the configuration to format.
+	 * @param out the target to append to.
+	 * @throws IOException if appending to the target fails.
+	 */
+	public void format(Map<K, V> cfg, Appendable out) throws IOException {
+		boolean first = true;
+		for (Map.Entry<K, V> entry : cfg.entrySet()) {
+			if (!first) {
+				out.append(partSep);
+			}
+			valuep.appendString(entry.getValue(), out);
+			out.append(keySep);
+			keyp.appendString(entry.getKey(), out);
+			first = false;
+		}
+	}
+
 	public boolean isIgnored(String label) {
 		return Pattern.matches(ignore, label);
 	}
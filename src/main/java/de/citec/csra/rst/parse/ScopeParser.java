@@ -16,9 +16,12 @@
  */
 package de.citec.csra.rst.parse;
 
+import java.io.IOException;
 import rsb.Scope;
 
 /**
+ * Parses scopes. Regions are parsed from a copy, because {@link Scope} is
+ * only constructed from strings.
  *
  * @author Patrick Holthaus
  * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
@@ -44,4 +47,21 @@ public class ScopeParser implements StringParser<Scope> {
 	public String getString(Scope obj) {
 		return obj.toString();
 	}
+
+	@Override
+	public void appendString(Scope obj, StringBuilder out) {
+		try {
+			appendString(obj, (Appendable) out);
+		} catch (IOException ex) {
+			throw new AssertionError(ex);
+		}
+	}
+
+	@Override
+	public void appendString(Scope obj, Appendable out) throws IOException {
+		out.append(Scope.COMPONENT_SEPARATOR);
+		for (String component : obj.getComponents()) {
+			out.append(component).append(Scope.COMPONENT_SEPARATOR);
+		}
+	}
 }
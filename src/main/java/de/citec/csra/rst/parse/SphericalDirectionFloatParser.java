@@ -28,14 +28,20 @@ public class SphericalDirectionFloatParser implements StringParser<SphericalDire
 
 	@Override
 	public SphericalDirectionFloat getValue(String val) throws IllegalArgumentException {
-		String[] pt = val.split(",");
-		if (pt.length != 2) {
-			throw new IllegalArgumentException("Illegal angle: " + val);
+		return getValue(val, 0, val.length());
+	}
+
+	@Override
+	public SphericalDirectionFloat getValue(CharSequence seq, int start, int end) throws IllegalArgumentException {
+		int last = CharSequences.trimEnd(seq, ',', start, end);
+		int comma = CharSequences.indexOf(seq, ',', start, last);
+		if (comma == last || CharSequences.indexOf(seq, ',', comma + 1, last) != last) {
+			throw new IllegalArgumentException("Illegal angle: " + seq.subSequence(start, end));
 		}
 
 		SphericalDirectionFloat angle = SphericalDirectionFloat.newBuilder().
-				setAzimuth(Float.valueOf(pt[0])).
-				setElevation(Float.valueOf(pt[1])).build();
+				setAzimuth(CharSequences.parseFloat(seq, start, comma)).
+				setElevation(CharSequences.parseFloat(seq, comma + 1, last)).build();
 
 		return angle;
 	}
@@ -48,9 +54,14 @@ public class SphericalDirectionFloatParser implements StringParser<SphericalDire
 	@Override
 	public String getString(SphericalDirectionFloat obj) {
 		StringBuilder bld = new StringBuilder();
-		bld.append(obj.getAzimuth()).
+		appendString(obj, bld);
+		return bld.toString();
+	}
+
+	@Override
+	public void appendString(SphericalDirectionFloat obj, StringBuilder out) {
+		out.append(obj.getAzimuth()).
 				append(",").
 				append(obj.getElevation());
-		return bld.toString();
 	}
 }
@@ -16,6 +16,8 @@
  */
 package de.citec.csra.rst.parse;
 
+import java.io.IOException;
+
 /**
  *
  * @author Patrick Holthaus
@@ -26,4 +28,45 @@ public interface StringParser<T> {
 	public Class<T> getTargetClass();
 	public T getValue(String tgt) throws IllegalArgumentException;
 	public String getString(T obj);
+
+	/**
+	 * Parses the region {@code [start, end)} of the given characters. The
+	 * default implementation parses a copy of the region, parsers override
+	 * this to work on the characters directly.
+	 *
+	 * @param seq the characters to parse.
+	 * @param start index of the first character.
+	 * @param end index after the last character.
+	 * @return the parsed value.
+	 * @throws IllegalArgumentException if the region cannot be parsed.
+	 */
+	public default T getValue(CharSequence seq, int start, int end) throws IllegalArgumentException {
+		return getValue(seq.subSequence(start, end).toString());
+	}
+
+	/**
+	 * Appends the string representation of the given object, which is the
+	 * same as {@link #getString(java.lang.Object)} would return.
+	 *
+	 * @param obj the object to format.
+	 * @param out the builder to append to.
+	 */
+	public default void appendString(T obj, StringBuilder out) {
+		out.append(getString(obj));
+	}
+
+	/**
+	 * Appends the string representation of the given object.
+	 *
+	 * @param obj the object to format.
+	 * @param out the target to append to.
+	 * @throws IOException if appending fails.
+	 */
+	public default void appendString(T obj, Appendable out) throws IOException {
+		if (out instanceof StringBuilder) {
+			appendString(obj, (StringBuilder) out);
+		} else {
+			out.append(getString(obj));
+		}
+	}
 }
@@ -0,0 +1,471 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import static de.citec.csra.rst.util.PrimitiveIntervals.BEGIN;
+import static de.citec.csra.rst.util.PrimitiveIntervals.END;
+import static de.citec.csra.rst.util.StringRepresentation.lazyString;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import rst.communicationpatterns.ResourceAllocationType.ResourceAllocation;
+import rst.communicationpatterns.ResourceAllocationType.ResourceAllocation.Priority;
+import rst.communicationpatterns.ResourceAllocationType.ResourceAllocation.State;
+import rst.timing.IntervalType.Interval;
+
+/**
+ * Admits or rejects resource allocations against the allocations already
+ * scheduled on their resources. A request only competes with allocations of
+ * the same or a higher priority, allocations of a lower priority that
+ * overlap the granted slot are displaced. The policy decides which part of
+ * the requested slot is granted: {@code PRESERVE} requires the complete
+ * slot, {@code FIRST} grants the earliest free part and {@code MAXIMUM} the
+ * longest one.
+ * <p>
+ * Every resource keeps a {@link Timeline} per priority level. Resources are
+ * guarded by a fixed set of lock stripes chosen by resource id, so requests
+ * for resources on different stripes proceed in parallel. Requests that
+ * span several stripes lock them in ascending order. Instances are
+ * thread-safe.
+ * <p>
+ * Allocations expire when their resource is requested again, resources
+ * without allocations are forgotten. Call {@link #expire()} periodically to
+ * also drop resources that are not requested anymore.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class AllocationScheduler {
+
+	private final static Logger LOG = Logger.getLogger(AllocationScheduler.class.getName());
+	private final static int LEVELS = Priority.values().length;
+
+	private final ReentrantLock[] stripes;
+	private final int mask;
+	private final Map<String, Resource> resources = new ConcurrentHashMap<>();
+	private final Consumer<ResourceAllocation> displaced;
+	private volatile TimeSource time = IntervalUtils::currentTimeInMicros;
+
+	public AllocationScheduler() {
+		this(a -> {
+		});
+	}
+
+	/**
+	 * @param displaced receives allocations that were displaced by requests
+	 * of a higher priority, called after all locks have been released.
+	 */
+	public AllocationScheduler(Consumer<ResourceAllocation> displaced) {
+		this(4 * Runtime.getRuntime().availableProcessors(), displaced);
+	}
+
+	/**
+	 * @param stripes the number of lock stripes, rounded up to a power of two.
+	 * @param displaced receives allocations that were displaced by requests
+	 * of a higher priority, called after all locks have been released.
+	 */
+	public AllocationScheduler(int stripes, Consumer<ResourceAllocation> displaced) {
+		int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		this.stripes = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+		this.mask = size - 1;
+		this.displaced = displaced;
+	}
+
+	/**
+	 * Selects the time source that decides when allocations expire, the
+	 * global one of {@link IntervalUtils} by default.
+	 *
+	 * @param time the time source to use.
+	 */
+	public void setTimeSource(TimeSource time) {
+		this.time = time;
+	}
+
+	/**
+	 * Schedules an allocation request.
+	 *
+	 * @param request the requested allocation.
+	 * @return the request in state SCHEDULED with the granted slot, or in
+	 * state REJECTED with the requested slot if nothing could be granted.
+	 */
+	public ResourceAllocation schedule(ResourceAllocation request) {
+		long begin = request.getSlot().getBegin().getTime();
+		long end = request.getSlot().getEnd().getTime();
+		if (request.getResourceIdsCount() == 0 || end <= begin) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Rejecting invalid allocation request: ''{0}''", lazyString(request));
+			}
+			return reject(request);
+		}
+		List<ResourceAllocation> removed = new ArrayList<>();
+		ResourceAllocation result;
+		int[] needed = stripesOf(request.getResourceIdsList(), new int[0]);
+		do {
+			int[] locked = needed;
+			lock(locked);
+			try {
+				result = admit(request, begin, end, removed);
+				if (result == null) {
+					needed = stripesOf(request.getResourceIdsList(), ownerStripes(removed));
+					removed.clear();
+				}
+			} finally {
+				unlock(locked);
+			}
+		} while (result == null);
+		for (ResourceAllocation a : removed) {
+			displaced.accept(a);
+		}
+		return result;
+	}
+
+	/**
+	 * Releases a scheduled allocation from all of its resources.
+	 *
+	 * @param allocation the allocation to release, identified by its id and
+	 * resources.
+	 * @return whether the allocation was scheduled on any of its resources.
+	 */
+	public boolean release(ResourceAllocation allocation) {
+		int[] locked = stripesOf(allocation.getResourceIdsList(), new int[0]);
+		lock(locked);
+		try {
+			boolean found = false;
+			for (String id : allocation.getResourceIdsList()) {
+				Resource r = resources.get(id);
+				found |= r != null && r.remove(allocation.getId()) != null;
+				prune(id);
+			}
+			return found;
+		} finally {
+			unlock(locked);
+		}
+	}
+
+	/**
+	 * Replaces a scheduled allocation with a new version of the same id, for
+	 * example to reflect a change of its state. The new slot is taken over
+	 * without checking it against other allocations.
+	 *
+	 * @param allocation the new version of the allocation.
+	 * @return whether the allocation was scheduled on all of its resources.
+	 */
+	public boolean update(ResourceAllocation allocation) {
+		int[] locked = stripesOf(allocation.getResourceIdsList(), new int[0]);
+		lock(locked);
+		try {
+			for (String id : allocation.getResourceIdsList()) {
+				Resource r = resources.get(id);
+				if (r == null || !r.allocations.containsKey(allocation.getId())) {
+					return false;
+				}
+			}
+			for (String id : allocation.getResourceIdsList()) {
+				Resource r = resources.get(id);
+				r.remove(allocation.getId());
+				r.add(allocation);
+			}
+			return true;
+		} finally {
+			unlock(locked);
+		}
+	}
+
+	/**
+	 * Drops the expired allocations of all resources and forgets the
+	 * resources that have no allocations left. Each resource is handled while
+	 * holding its stripe only.
+	 */
+	public void expire() {
+		long now = time.currentTimeInMicros();
+		Iterator<Map.Entry<String, Resource>> it = resources.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Resource> e = it.next();
+			ReentrantLock lock = stripes[stripe(e.getKey())];
+			lock.lock();
+			try {
+				Resource r = resources.get(e.getKey());
+				if (r != null) {
+					r.expire(now);
+					prune(e.getKey());
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * @param resource the resource id.
+	 * @return a snapshot of the allocations scheduled on the resource.
+	 */
+	public List<ResourceAllocation> getAllocations(String resource) {
+		ReentrantLock lock = stripes[stripe(resource)];
+		lock.lock();
+		try {
+			Resource r = resources.get(resource);
+			return r == null ? new ArrayList<>() : new ArrayList<>(r.allocations.values());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Decides on a request while holding the stripes of its resources.
+	 *
+	 * @return the decision, or {@code null} if displaced allocations span
+	 * stripes that are not held and the attempt has to be repeated.
+	 */
+	private ResourceAllocation admit(ResourceAllocation request, long begin, long end, List<ResourceAllocation> removed) {
+		long now = time.currentTimeInMicros();
+		int level = request.getPriority().ordinal();
+		List<Resource> targets = new ArrayList<>(request.getResourceIdsCount());
+		for (String id : request.getResourceIdsList()) {
+			Resource r = resources.computeIfAbsent(id, k -> new Resource());
+			r.expire(now);
+			if (r.allocations.containsKey(request.getId())) {
+				if (LOG.isLoggable(Level.WARNING)) {
+					LOG.log(Level.WARNING, "Rejecting allocation request with known id: ''{0}''", lazyString(request));
+				}
+				prune(request.getResourceIdsList());
+				return reject(request);
+			}
+			targets.add(r);
+		}
+
+		long[] slot = new long[2];
+		if (!find(request, begin, end, level, targets, slot)) {
+			prune(request.getResourceIdsList());
+			return reject(request);
+		}
+
+		Map<String, ResourceAllocation> lower = new LinkedHashMap<>();
+		for (Resource r : targets) {
+			for (ResourceAllocation a : r.allocations.values()) {
+				if (a.getPriority().ordinal() < level
+						&& a.getSlot().getBegin().getTime() < slot[END]
+						&& a.getSlot().getEnd().getTime() > slot[BEGIN]) {
+					lower.put(a.getId(), a);
+				}
+			}
+		}
+		removed.addAll(lower.values());
+		if (!holds(stripesOf(request.getResourceIdsList(), ownerStripes(removed)))) {
+			return null;
+		}
+
+		for (int i = 0; i < removed.size(); i++) {
+			ResourceAllocation a = removed.get(i);
+			for (String id : a.getResourceIdsList()) {
+				Resource r = resources.get(id);
+				if (r != null) {
+					r.remove(a.getId());
+				}
+			}
+			removed.set(i, a.toBuilder().setState(a.getState() == State.ALLOCATED ? State.ABORTED : State.REJECTED).buildPartial());
+		}
+
+		ResourceAllocation granted = request.toBuilder().
+				setState(State.SCHEDULED).
+				setSlot(PrimitiveIntervals.toRst(slot[BEGIN], slot[END])).
+				buildPartial();
+		for (Resource r : targets) {
+			r.add(granted);
+		}
+		for (ResourceAllocation a : removed) {
+			prune(a.getResourceIdsList());
+		}
+		return granted;
+	}
+
+	private boolean find(ResourceAllocation request, long begin, long end, int level, List<Resource> targets, long[] slot) {
+		if (targets.size() == 1) {
+			Timeline t = targets.get(0).levels[level];
+			switch (request.getPolicy()) {
+				case FIRST:
+					return t.findFirst(begin, end, begin, end, slot);
+				case MAXIMUM:
+					return t.findMax(begin, end, begin, end, slot);
+				default:
+					return t.findComplete(begin, end, begin, end, slot);
+			}
+		}
+		int count = 0;
+		for (Resource r : targets) {
+			count += r.allocations.size();
+		}
+		long[] begins = new long[count];
+		long[] ends = new long[count];
+		count = 0;
+		for (Resource r : targets) {
+			for (ResourceAllocation a : r.allocations.values()) {
+				if (a.getPriority().ordinal() >= level) {
+					begins[count] = a.getSlot().getBegin().getTime();
+					ends[count] = a.getSlot().getEnd().getTime();
+					count++;
+				}
+			}
+		}
+		FreeTime free = FreeTime.of(begins, ends, count);
+		switch (request.getPolicy()) {
+			case FIRST:
+				return free.findFirst(begin, end, begin, end, slot);
+			case MAXIMUM:
+				return free.findMax(begin, end, begin, end, slot);
+			default:
+				return free.findComplete(begin, end, begin, end, slot);
+		}
+	}
+
+	/**
+	 * Forgets the given resources if they have no allocations left, only
+	 * called while holding their stripes.
+	 */
+	private void prune(List<String> ids) {
+		for (String id : ids) {
+			prune(id);
+		}
+	}
+
+	private void prune(String id) {
+		Resource r = resources.get(id);
+		if (r != null && r.allocations.isEmpty()) {
+			resources.remove(id);
+		}
+	}
+
+	private static ResourceAllocation reject(ResourceAllocation request) {
+		return request.toBuilder().setState(State.REJECTED).buildPartial();
+	}
+
+	private int[] ownerStripes(List<ResourceAllocation> owners) {
+		List<String> ids = new ArrayList<>();
+		for (ResourceAllocation a : owners) {
+			ids.addAll(a.getResourceIdsList());
+		}
+		return stripesOf(ids, new int[0]);
+	}
+
+	/**
+	 * Sorted, distinct stripes of the given resources merged with the given
+	 * sorted, distinct stripes.
+	 */
+	private int[] stripesOf(List<String> ids, int[] others) {
+		int[] s = Arrays.copyOf(others, others.length + ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			s[others.length + i] = stripe(ids.get(i));
+		}
+		Arrays.sort(s);
+		int n = 0;
+		for (int i = 0; i < s.length; i++) {
+			if (n == 0 || s[n - 1] != s[i]) {
+				s[n++] = s[i];
+			}
+		}
+		return Arrays.copyOf(s, n);
+	}
+
+	private boolean holds(int[] needed) {
+		for (int s : needed) {
+			if (!stripes[s].isHeldByCurrentThread()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void lock(int[] locked) {
+		for (int s : locked) {
+			stripes[s].lock();
+		}
+	}
+
+	private void unlock(int[] locked) {
+		for (int i = locked.length - 1; i >= 0; i--) {
+			stripes[locked[i]].unlock();
+		}
+	}
+
+	private int stripe(String resource) {
+		int h = resource.hashCode();
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Allocations of a single resource, only accessed while holding its
+	 * stripe. Timeline {@code k} contains the allocations with a priority of
+	 * at least {@code k}.
+	 */
+	private static class Resource {
+
+		private final Timeline[] levels = new Timeline[LEVELS];
+		private final Map<String, ResourceAllocation> allocations = new HashMap<>();
+		private long expiry = Long.MAX_VALUE;
+
+		Resource() {
+			for (int i = 0; i < LEVELS; i++) {
+				levels[i] = new Timeline();
+				levels[i].setAutoExpire(false);
+			}
+		}
+
+		void add(ResourceAllocation a) {
+			Interval slot = a.getSlot();
+			allocations.put(a.getId(), a);
+			for (int i = 0; i <= a.getPriority().ordinal(); i++) {
+				levels[i].add(slot);
+			}
+			expiry = Math.min(expiry, slot.getEnd().getTime());
+		}
+
+		ResourceAllocation remove(String id) {
+			ResourceAllocation a = allocations.remove(id);
+			if (a != null) {
+				for (int i = 0; i <= a.getPriority().ordinal(); i++) {
+					levels[i].remove(a.getSlot());
+				}
+			}
+			return a;
+		}
+
+		void expire(long now) {
+			if (now < expiry) {
+				return;
+			}
+			for (Timeline t : levels) {
+				t.expire(now);
+			}
+			expiry = Long.MAX_VALUE;
+			allocations.values().removeIf(a -> a.getSlot().getEnd().getTime() <= now);
+			for (ResourceAllocation a : allocations.values()) {
+				expiry = Math.min(expiry, a.getSlot().getEnd().getTime());
+			}
+		}
+	}
+}
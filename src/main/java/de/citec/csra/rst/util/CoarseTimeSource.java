@@ -0,0 +1,101 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Time source that is refreshed by a background ticker, so reading it only
+ * costs a single volatile load. The returned time lags behind the precise
+ * time by up to one period plus scheduling delays and never decreases as
+ * long as the underlying source does not.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class CoarseTimeSource implements TimeSource, AutoCloseable {
+
+	public final static long DEFAULT_PERIOD = 100;
+
+	private final TimeSource source;
+	private final long period;
+	private final Thread ticker;
+	private volatile long now;
+	private volatile boolean running = true;
+
+	private static class Shared {
+
+		private final static CoarseTimeSource INSTANCE = new CoarseTimeSource(DEFAULT_PERIOD, TimeUnit.MICROSECONDS);
+	}
+
+	/**
+	 * Returns a shared instance that refreshes every
+	 * {@value #DEFAULT_PERIOD} microseconds. It is started on first use and
+	 * must not be closed.
+	 *
+	 * @return the shared coarse time source.
+	 */
+	public static CoarseTimeSource getShared() {
+		return Shared.INSTANCE;
+	}
+
+	public CoarseTimeSource(long period, TimeUnit unit) {
+		this(PRECISE, period, unit);
+	}
+
+	/**
+	 * Starts a daemon thread that refreshes the time periodically.
+	 *
+	 * @param source the source to read the time from.
+	 * @param period the refresh period.
+	 * @param unit the unit of the refresh period.
+	 */
+	public CoarseTimeSource(TimeSource source, long period, TimeUnit unit) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("period must be positive, got " + period);
+		}
+		this.source = source;
+		this.period = unit.toNanos(period);
+		this.now = source.currentTimeInMicros();
+		this.ticker = new Thread(this::tick, "coarse-time-source");
+		this.ticker.setDaemon(true);
+		this.ticker.start();
+	}
+
+	@Override
+	public long currentTimeInMicros() {
+		return now;
+	}
+
+	/**
+	 * Stops the background ticker, the time is no longer refreshed
+	 * afterwards.
+	 */
+	@Override
+	public void close() {
+		running = false;
+		LockSupport.unpark(ticker);
+	}
+
+	private void tick() {
+		while (running) {
+			now = source.currentTimeInMicros();
+			LockSupport.parkNanos(this, period);
+		}
+	}
+}
@@ -16,9 +16,12 @@
  */
 package de.citec.csra.rst.util;
 
-import static de.citec.csra.rst.util.StringRepresentation.shortString;
+import de.citec.csra.rst.metrics.Metrics;
+import java.io.IOException;
+import static de.citec.csra.rst.util.StringRepresentation.lazyString;
 import java.util.EnumMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import static java.util.concurrent.TimeUnit.DAYS;
 import static java.util.concurrent.TimeUnit.HOURS;
@@ -29,28 +32,59 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
+ * Parses durations from descriptions like {@code 2h 30m} or {@code 1500}.
+ * A description is scanned once from left to right, every number that is
+ * followed by one of the units {@code d}, {@code h}, {@code m}, {@code s},
+ * {@code ms}, {@code µs} or {@code ns} is added to the result. Only the first
+ * number per unit is considered. Descriptions that consist of a plain number
+ * are returned as they are. Results for strings are kept in a bounded cache.
+ * Durations can be formatted in the same vocabulary without allocating, and
+ * the formatted text parses back to the original value.
  *
  * @author Patrick Holthaus
  */
 public class DurationUtils {
 
 	private final static Logger LOG = Logger.getLogger(DurationUtils.class.getName());
-	private final static Map<TimeUnit, Pattern> PATTERNS = new EnumMap<>(TimeUnit.class);
+	private final static int CACHE_SIZE = 1024;
+	private final static Map<TimeUnit, Map<String, Parsed>> CACHE = new EnumMap<>(TimeUnit.class);
+	private final static long FAILED = Long.MIN_VALUE;
+	private final static String MIN_VALUE = Long.toString(Long.MIN_VALUE);
+	private final static TimeUnit[] UNITS = {DAYS, HOURS, MINUTES, SECONDS, MILLISECONDS, MICROSECONDS, NANOSECONDS};
+	private final static String[] SUFFIXES = new String[TimeUnit.values().length];
 
 	private static TimeUnit defaultUnit = TimeUnit.MICROSECONDS;
 
+	/**
+	 * Parsed value along with whether it is the fallback for a description
+	 * without a valid duration, so that fallbacks are counted on cache hits.
+	 */
+	private final static class Parsed {
+
+		final static Parsed FALLBACK = new Parsed(0, true);
+
+		final long value;
+		final boolean fallback;
+
+		Parsed(long value, boolean fallback) {
+			this.value = value;
+			this.fallback = fallback;
+		}
+	}
+
 	static {
-		PATTERNS.put(DAYS, Pattern.compile(".*?(\\d+)\\s*d.*"));
-		PATTERNS.put(HOURS, Pattern.compile(".*?(\\d+)\\s*h.*"));
-		PATTERNS.put(MINUTES, Pattern.compile(".*?(\\d+)\\s*m.*"));
-		PATTERNS.put(SECONDS, Pattern.compile(".*?(\\d+)\\s*s.*"));
-		PATTERNS.put(MILLISECONDS, Pattern.compile(".*?(\\d+)\\s*ms.*"));
-		PATTERNS.put(MICROSECONDS, Pattern.compile(".*?(\\d+)\\s*µs.*"));
-		PATTERNS.put(NANOSECONDS, Pattern.compile(".*?(\\d+)\\s*ns.*"));
+		for (TimeUnit unit : TimeUnit.values()) {
+			CACHE.put(unit, new ConcurrentHashMap<>());
+		}
+		SUFFIXES[DAYS.ordinal()] = "d";
+		SUFFIXES[HOURS.ordinal()] = "h";
+		SUFFIXES[MINUTES.ordinal()] = "m";
+		SUFFIXES[SECONDS.ordinal()] = "s";
+		SUFFIXES[MILLISECONDS.ordinal()] = "ms";
+		SUFFIXES[MICROSECONDS.ordinal()] = "µs";
+		SUFFIXES[NANOSECONDS.ordinal()] = "ns";
 	}
 
 	public static void setDefaultUnit(TimeUnit unit) {
@@ -67,29 +101,261 @@ public class DurationUtils {
 			LOG.log(Level.FINER, "Description is null, returning '0'.");
 			return 0;
 		}
-		
-		try {
-			return Long.valueOf(dsc);
-		} catch (NumberFormatException ex) {
-			LOG.log(Level.FINER, "Could not infer number from description string ''{0}''.", shortString(dsc));
+
+		Map<String, Parsed> cache = CACHE.get(target);
+		Parsed parsed = cache.get(dsc);
+		if (parsed != null) {
+			Metrics.DURATION_HITS.increment();
+		} else {
+			Metrics.DURATION_MISSES.increment();
+			parsed = evaluate(dsc, target);
+			if (cache.size() >= CACHE_SIZE) {
+				cache.clear();
+			}
+			cache.put(dsc, parsed);
+		}
+		if (parsed.fallback) {
+			Metrics.DURATION_FALLBACKS.increment();
 		}
+		return parsed.value;
+	}
 
-		try {
-			long value = 0;
-			for (Map.Entry<TimeUnit, Pattern> pair : PATTERNS.entrySet()) {
-				Matcher m = pair.getValue().matcher(dsc);
-				if (m.matches()) {
-					value += target.convert(Long.valueOf(m.group(1)), pair.getKey());
-					LOG.log(Level.FINEST, "Adding {0} {1}", new String[]{m.group(1), pair.getKey().name()});
+	/**
+	 * Parses many descriptions at once. Strings are looked up in the cache
+	 * like in {@link #parse(String, TimeUnit)}, other sequences are parsed
+	 * with {@link #parseUncached(CharSequence, TimeUnit)}.
+	 *
+	 * @param dscs the descriptions to parse, may contain {@code null}.
+	 * @param target the unit of the results, the default unit if {@code null}.
+	 * @return the parsed durations in the order of the descriptions.
+	 */
+	public static long[] parseAll(CharSequence[] dscs, TimeUnit target) {
+		if (target == null) {
+			LOG.log(Level.FINER, "Target unit is null, using default value ''{0}''.", defaultUnit);
+			target = defaultUnit;
+		}
+		long[] values = new long[dscs.length];
+		for (int i = 0; i < dscs.length; i++) {
+			CharSequence dsc = dscs[i];
+			if (dsc == null) {
+				values[i] = 0;
+			} else if (dsc instanceof String) {
+				values[i] = parse((String) dsc, target);
+			} else {
+				values[i] = parseUncached(dsc, target);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Parses a description without consulting the cache, for example a
+	 * slice of a larger buffer that is not worth copying into a string.
+	 *
+	 * @param dsc the description to parse.
+	 * @param target the unit of the result.
+	 * @return the parsed duration, or 0 if the description contains an invalid
+	 * number.
+	 */
+	public static long parseUncached(CharSequence dsc, TimeUnit target) {
+		if (target == null) {
+			target = defaultUnit;
+		}
+		if (dsc == null) {
+			return 0;
+		}
+		Parsed parsed = evaluate(dsc, target);
+		if (parsed.fallback) {
+			Metrics.DURATION_FALLBACKS.increment();
+		}
+		return parsed.value;
+	}
+
+	private static Parsed evaluate(CharSequence dsc, TimeUnit target) {
+		long number = parseNumber(dsc);
+		if (number != FAILED || MIN_VALUE.contentEquals(dsc)) {
+			return new Parsed(number, false);
+		}
+		LOG.log(Level.FINER, "Could not infer number from description string ''{0}''.", dsc);
+
+		long value = 0;
+		int seen = 0;
+		int len = dsc.length();
+		int i = 0;
+		while (i < len) {
+			if (!isDigit(dsc.charAt(i))) {
+				i++;
+				continue;
+			}
+			long amount = 0;
+			boolean overflow = false;
+			while (i < len && isDigit(dsc.charAt(i))) {
+				int digit = dsc.charAt(i++) - '0';
+				overflow |= amount > (Long.MAX_VALUE - digit) / 10;
+				amount = amount * 10 + digit;
+			}
+			while (i < len && Character.isWhitespace(dsc.charAt(i))) {
+				i++;
+			}
+			if (i >= len) {
+				break;
+			}
+			TimeUnit unit = null;
+			char c = dsc.charAt(i);
+			char n = i + 1 < len ? dsc.charAt(i + 1) : 0;
+			switch (c) {
+				case 'd':
+					unit = DAYS;
+					break;
+				case 'h':
+					unit = HOURS;
+					break;
+				case 'm':
+					unit = n == 's' ? MILLISECONDS : MINUTES;
+					break;
+				case 's':
+					unit = SECONDS;
+					break;
+				case 'µ':
+				case 'μ':
+					unit = n == 's' ? MICROSECONDS : null;
+					break;
+				case 'n':
+					unit = n == 's' ? NANOSECONDS : null;
+					break;
+			}
+			if (unit != null && (seen & (1 << unit.ordinal())) == 0) {
+				if (overflow) {
+					if (LOG.isLoggable(Level.FINER)) {
+						LOG.log(Level.FINER, "Could not infer time value from description string ''{0}'', returning '0'.", lazyString(dsc));
+					}
+					return Parsed.FALLBACK;
+				}
+				seen |= 1 << unit.ordinal();
+				value += target.convert(amount, unit);
+				if (LOG.isLoggable(Level.FINEST)) {
+					LOG.log(Level.FINEST, "Adding {0} {1}", new Object[]{amount, unit});
 				}
 			}
+		}
+		if (LOG.isLoggable(Level.FINER)) {
 			LOG.log(Level.FINER, "Converted ''{0}'' to {1} {2}", new Object[]{dsc, value, target.name()});
-			return value;
-		} catch (NumberFormatException ex) {
-			LOG.log(Level.FINER, "Could not infer time value from description string ''{0}'', returning '0'.", shortString(dsc));
-			return 0;
 		}
-		
-		
+		return seen == 0 ? Parsed.FALLBACK : new Parsed(value, false);
+	}
+
+	public static String format(long value, TimeUnit unit) {
+		return format(value, unit, new StringBuilder(24)).toString();
+	}
+
+	/**
+	 * Formats a duration like {@code 2h 30m} into the given builder.
+	 *
+	 * @see #format(long, TimeUnit, Appendable)
+	 * @param value the duration.
+	 * @param unit the unit of the duration.
+	 * @param out the builder to append to.
+	 * @return the given builder.
+	 */
+	public static StringBuilder format(long value, TimeUnit unit, StringBuilder out) {
+		try {
+			format(value, unit, (Appendable) out);
+		} catch (IOException ex) {
+			throw new AssertionError(ex);
+		}
+		return out;
+	}
+
+	/**
+	 * Formats a duration like {@code 2h 30m} without allocating. Every unit
+	 * from days down to the given unit with a non-zero amount is written
+	 * once, so {@link #parse(String, TimeUnit)} with the same unit returns
+	 * the original value. Zero and negative durations are written as plain
+	 * numbers in the given unit.
+	 *
+	 * @param value the duration.
+	 * @param unit the unit of the duration.
+	 * @param out the target to append to.
+	 * @throws IOException if appending to the target fails.
+	 */
+	public static void format(long value, TimeUnit unit, Appendable out) throws IOException {
+		if (value <= 0) {
+			if (value < 0) {
+				out.append('-');
+			}
+			appendDigits(value, out);
+			return;
+		}
+		long remaining = value;
+		boolean first = true;
+		for (TimeUnit u : UNITS) {
+			if (u.compareTo(unit) < 0) {
+				break;
+			}
+			long amount = u.convert(remaining, unit);
+			if (amount == 0) {
+				continue;
+			}
+			remaining -= unit.convert(amount, u);
+			if (!first) {
+				out.append(' ');
+			}
+			appendDigits(-amount, out);
+			out.append(SUFFIXES[u.ordinal()]);
+			first = false;
+		}
+	}
+
+	/**
+	 * Writes the digits of a non-positive number, which also covers
+	 * {@link Long#MIN_VALUE}.
+	 */
+	private static void appendDigits(long negative, Appendable out) throws IOException {
+		long divisor = -1;
+		while (negative / 10 <= divisor) {
+			divisor *= 10;
+		}
+		while (divisor != 0) {
+			out.append((char) ('0' + negative / divisor));
+			negative %= divisor;
+			divisor /= 10;
+		}
+	}
+
+	/**
+	 * Parses a plain number with an optional sign like {@link Long#valueOf(String)},
+	 * but without throwing.
+	 */
+	private static long parseNumber(CharSequence dsc) {
+		int len = dsc.length();
+		if (len == 0) {
+			return FAILED;
+		}
+		int i = 0;
+		boolean negative = false;
+		char first = dsc.charAt(0);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			if (++i == len) {
+				return FAILED;
+			}
+		}
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long result = 0;
+		for (; i < len; i++) {
+			char c = dsc.charAt(i);
+			if (!isDigit(c) || result < (limit + (c - '0')) / 10) {
+				return FAILED;
+			}
+			result = result * 10 - (c - '0');
+		}
+		if (result == Long.MIN_VALUE && !negative) {
+			return FAILED;
+		}
+		return negative ? result : -result;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
 	}
 }
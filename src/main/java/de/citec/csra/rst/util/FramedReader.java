@@ -0,0 +1,172 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deserializes a sequence of length-framed payloads (see {@link Frames}) one
+ * at a time. Payloads are decoded from slices of the underlying buffer
+ * without copying them first. Files are mapped into memory in windows of
+ * bounded size that move along with the reader, so arbitrarily large
+ * recordings can be replayed. A frame that is cut off at the end of the
+ * input ends the sequence.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class FramedReader<T> implements Iterator<T>, Closeable {
+
+	private final static Logger LOG = Logger.getLogger(FramedReader.class.getName());
+	public final static int DEFAULT_WINDOW = 64 * 1024 * 1024;
+
+	private final SerializationService<T> service;
+	private final FileChannel channel;
+	private final long size;
+	private final int window;
+	private ByteBuffer buffer;
+	private long base;
+	private int next = -1;
+	private int prefix;
+	private int length;
+
+	/**
+	 * Reads the frames between position and limit of the given buffer, which
+	 * may also be a {@link java.nio.MappedByteBuffer}.
+	 *
+	 * @param service the service used to decode the payloads.
+	 * @param buffer the buffer holding the frames.
+	 */
+	public FramedReader(SerializationService<T> service, ByteBuffer buffer) {
+		this.service = service;
+		this.channel = null;
+		this.buffer = buffer.slice();
+		this.size = this.buffer.limit();
+		this.window = this.buffer.limit();
+		this.base = 0;
+	}
+
+	public FramedReader(SerializationService<T> service, FileChannel channel) throws IOException {
+		this(service, channel, DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Reads all frames of the given file.
+	 *
+	 * @param service the service used to decode the payloads.
+	 * @param channel the file holding the frames.
+	 * @param window number of bytes mapped at once, larger frames are mapped
+	 * individually.
+	 * @throws IOException if the file cannot be mapped.
+	 */
+	public FramedReader(SerializationService<T> service, FileChannel channel, int window) throws IOException {
+		this.service = service;
+		this.channel = channel;
+		this.size = channel.size();
+		this.window = window;
+		this.base = 0;
+		this.buffer = map(0, (int) Math.min(window, size));
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next >= 0) {
+			return true;
+		}
+		long absolute = base + buffer.position();
+		if (absolute >= size) {
+			return false;
+		}
+		try {
+			ensure(Frames.MAX_HEADER);
+			long header = Frames.peekLength(buffer, buffer.position());
+			if (header == Frames.INCOMPLETE) {
+				LOG.log(Level.WARNING, "Truncated frame at offset {0}, stopping.", absolute);
+				return false;
+			} else if (header == Frames.MALFORMED) {
+				LOG.log(Level.WARNING, "Invalid frame header at offset {0}, stopping.", absolute);
+				return false;
+			}
+			prefix = Frames.prefix(header);
+			length = Frames.length(header);
+			if (absolute + prefix + length > size) {
+				LOG.log(Level.WARNING, "Truncated frame at offset {0}, stopping.", absolute);
+				return false;
+			}
+			ensure(prefix + length);
+			next = buffer.position() + prefix;
+			return true;
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		ByteBuffer frame = Frames.slice(buffer, next, length);
+		buffer.position(next + length);
+		next = -1;
+		return service.deserialize(frame);
+	}
+
+	/**
+	 * Offset of the next frame relative to the start of the input.
+	 *
+	 * @return the number of bytes consumed so far.
+	 */
+	public long getOffset() {
+		return next >= 0 ? base + next - prefix : base + buffer.position();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Makes sure that the given number of bytes following the current
+	 * position are mapped, as far as the input reaches.
+	 */
+	private void ensure(int bytes) throws IOException {
+		long absolute = base + buffer.position();
+		long needed = Math.min(bytes, size - absolute);
+		if (buffer.remaining() < needed) {
+			if (channel == null) {
+				return;
+			}
+			buffer = map(absolute, (int) Math.min(Math.max(window, needed), size - absolute));
+			base = absolute;
+		}
+	}
+
+	private ByteBuffer map(long offset, int length) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+	}
+}
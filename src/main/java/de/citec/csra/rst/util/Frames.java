@@ -0,0 +1,137 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Length framing for sequences of serialized payloads. Every payload is
+ * preceded by its length as an unsigned base 128 varint, which is the same
+ * framing as {@code Message.writeDelimitedTo} uses in protocol buffers.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class Frames {
+
+	/**
+	 * Maximum number of bytes of a length prefix.
+	 */
+	public final static int MAX_HEADER = 5;
+
+	/**
+	 * Returned by {@link #peekLength(java.nio.ByteBuffer, int)} if the prefix
+	 * is cut off by the end of the buffer.
+	 */
+	public final static long INCOMPLETE = -1;
+
+	/**
+	 * Returned by {@link #peekLength(java.nio.ByteBuffer, int)} if the prefix
+	 * is not a valid length.
+	 */
+	public final static long MALFORMED = -2;
+
+	/**
+	 * Number of bytes needed to prefix a payload of the given length.
+	 *
+	 * @param length the payload length.
+	 * @return the size of the length prefix.
+	 */
+	public static int headerSize(int length) {
+		if ((length & (~0 << 7)) == 0) {
+			return 1;
+		} else if ((length & (~0 << 14)) == 0) {
+			return 2;
+		} else if ((length & (~0 << 21)) == 0) {
+			return 3;
+		} else if ((length & (~0 << 28)) == 0) {
+			return 4;
+		}
+		return 5;
+	}
+
+	/**
+	 * Writes a length prefix at the current position of the buffer.
+	 *
+	 * @param buffer the buffer to write to.
+	 * @param length the payload length.
+	 */
+	public static void writeLength(ByteBuffer buffer, int length) {
+		while ((length & ~0x7F) != 0) {
+			buffer.put((byte) ((length & 0x7F) | 0x80));
+			length >>>= 7;
+		}
+		buffer.put((byte) length);
+	}
+
+	/**
+	 * Reads a length prefix at the given absolute index without moving the
+	 * buffer's position.
+	 *
+	 * @param buffer the buffer to read from.
+	 * @param index the absolute index of the prefix.
+	 * @return the payload length in the lower 32 bits and the prefix size in
+	 * the upper 32 bits, or {@link #INCOMPLETE} or {@link #MALFORMED}.
+	 */
+	public static long peekLength(ByteBuffer buffer, int index) {
+		int length = 0;
+		for (int i = 0; i < MAX_HEADER; i++) {
+			if (index + i >= buffer.limit()) {
+				return INCOMPLETE;
+			}
+			byte b = buffer.get(index + i);
+			if (i == MAX_HEADER - 1 && (b & 0x70) != 0) {
+				return MALFORMED;
+			}
+			length |= (b & 0x7F) << (7 * i);
+			if (b >= 0) {
+				return length < 0 ? MALFORMED : ((long) (i + 1) << 32) | length;
+			}
+		}
+		return MALFORMED;
+	}
+
+	/**
+	 * @param header a value returned by {@link #peekLength(java.nio.ByteBuffer, int)}.
+	 * @return the payload length.
+	 */
+	public static int length(long header) {
+		return (int) header;
+	}
+
+	/**
+	 * @param header a value returned by {@link #peekLength(java.nio.ByteBuffer, int)}.
+	 * @return the size of the length prefix.
+	 */
+	public static int prefix(long header) {
+		return (int) (header >>> 32);
+	}
+
+	/**
+	 * Returns a view of the given region that shares the buffer's content.
+	 *
+	 * @param buffer the buffer to slice.
+	 * @param index absolute index of the region.
+	 * @param length length of the region.
+	 * @return a buffer covering exactly the region.
+	 */
+	public static ByteBuffer slice(ByteBuffer buffer, int index, int length) {
+		ByteBuffer dup = buffer.duplicate();
+		dup.limit(index + length).position(index);
+		return dup.slice();
+	}
+}
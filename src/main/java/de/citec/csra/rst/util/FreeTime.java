@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import static de.citec.csra.rst.util.PrimitiveIntervals.BEGIN;
+import static de.citec.csra.rst.util.PrimitiveIntervals.END;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import rst.timing.IntervalType.Interval;
+
+/**
+ * Immutable snapshot of the free time left by a list of blocks. The blocks
+ * are sorted and merged once, afterwards every query only needs a binary
+ * search over the merged busy spans. Use this to answer many goals against
+ * the same blocks, the batch methods return their results in input order
+ * with the semantics of the single-goal methods in {@link IntervalUtils}.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class FreeTime {
+
+	private final long[] begins;
+	private final long[] ends;
+	private final int count;
+	private final PrimitiveIntervals.Spans spans = new PrimitiveIntervals.Spans() {
+
+		@Override
+		public long freeFrom(long time) {
+			int span = floor(time);
+			return (span >= 0 && ends[span] > time) ? ends[span] : time;
+		}
+
+		@Override
+		public long busyFrom(long free) {
+			int span = floor(free) + 1;
+			return span < count ? begins[span] : Long.MAX_VALUE;
+		}
+	};
+
+	private FreeTime(long[] begins, long[] ends, int count) {
+		this.begins = begins;
+		this.ends = ends;
+		this.count = count;
+	}
+
+	public static FreeTime of(List<Interval> blocks) {
+		int size = blocks.size();
+		long[] b = new long[size];
+		long[] e = new long[size];
+		for (int i = 0; i < size; i++) {
+			Interval block = blocks.get(i);
+			b[i] = block.getBegin().getTime();
+			e[i] = block.getEnd().getTime();
+		}
+		return of(b, e, size);
+	}
+
+	/**
+	 * Creates a snapshot from primitive blocks. The given arrays are copied.
+	 *
+	 * @param begins block begins in microseconds, in any order.
+	 * @param ends block ends in microseconds, matching {@code begins}.
+	 * @param count number of blocks to consider.
+	 * @return the free time left by the blocks.
+	 */
+	public static FreeTime of(long[] begins, long[] ends, int count) {
+		long[] b = Arrays.copyOf(begins, count);
+		long[] e = Arrays.copyOf(ends, count);
+		PrimitiveIntervals.sort(b, e, count);
+		int merged = 0;
+		for (int i = 0; i < count; i++) {
+			if (e[i] <= b[i]) {
+				continue;
+			}
+			if (merged > 0 && b[i] <= e[merged - 1]) {
+				e[merged - 1] = Math.max(e[merged - 1], e[i]);
+			} else {
+				b[merged] = b[i];
+				e[merged] = e[i];
+				merged++;
+			}
+		}
+		return new FreeTime(b, e, merged);
+	}
+
+	public List<Interval> findFirstAll(List<Interval> goals, List<Interval> ranges) {
+		checkSize(goals, ranges);
+		long[] result = new long[2];
+		List<Interval> found = new ArrayList<>(goals.size());
+		for (int i = 0; i < goals.size(); i++) {
+			Interval g = goals.get(i);
+			Interval r = ranges.get(i);
+			found.add(g != null && r != null && findFirst(g.getBegin().getTime(), g.getEnd().getTime(),
+					r.getBegin().getTime(), r.getEnd().getTime(), result)
+					? PrimitiveIntervals.toRst(result[BEGIN], result[END]) : null);
+		}
+		return found;
+	}
+
+	public List<Interval> findMaxAll(List<Interval> goals, List<Interval> ranges) {
+		checkSize(goals, ranges);
+		long[] result = new long[2];
+		List<Interval> found = new ArrayList<>(goals.size());
+		for (int i = 0; i < goals.size(); i++) {
+			Interval g = goals.get(i);
+			Interval r = ranges.get(i);
+			found.add(g != null && r != null && findMax(g.getBegin().getTime(), g.getEnd().getTime(),
+					r.getBegin().getTime(), r.getEnd().getTime(), result)
+					? PrimitiveIntervals.toRst(result[BEGIN], result[END]) : null);
+		}
+		return found;
+	}
+
+	public List<Interval> findCompleteAll(List<Interval> goals, List<Interval> ranges) {
+		checkSize(goals, ranges);
+		long[] result = new long[2];
+		List<Interval> found = new ArrayList<>(goals.size());
+		for (int i = 0; i < goals.size(); i++) {
+			Interval g = goals.get(i);
+			Interval r = ranges.get(i);
+			found.add(g != null && r != null && findComplete(g.getBegin().getTime(), g.getEnd().getTime(),
+					r.getBegin().getTime(), r.getEnd().getTime(), result) ? g : null);
+		}
+		return found;
+	}
+
+	/**
+	 * @see PrimitiveIntervals#findFirst(long, long, long, long, long[], long[], int, long[])
+	 */
+	public boolean findFirst(long gBegin, long gEnd, long rBegin, long rEnd, long[] result) {
+		return PrimitiveIntervals.findFirst(gBegin, gEnd, rBegin, rEnd, spans, result);
+	}
+
+	/**
+	 * @see PrimitiveIntervals#findMax(long, long, long, long, long[], long[], int, long[])
+	 */
+	public boolean findMax(long gBegin, long gEnd, long rBegin, long rEnd, long[] result) {
+		return PrimitiveIntervals.findMax(gBegin, gEnd, rBegin, rEnd, spans, result);
+	}
+
+	/**
+	 * @see PrimitiveIntervals#findComplete(long, long, long, long, long[], long[], int, long[])
+	 */
+	public boolean findComplete(long gBegin, long gEnd, long rBegin, long rEnd, long[] result) {
+		return PrimitiveIntervals.findComplete(gBegin, gEnd, rBegin, rEnd, spans, result);
+	}
+
+	/**
+	 * @see PrimitiveIntervals#findRemaining(long, long, long, long[], long[], int, long[])
+	 */
+	public boolean findRemaining(long gBegin, long gEnd, long now, long[] result) {
+		return PrimitiveIntervals.findRemaining(gBegin, gEnd, now, spans, result);
+	}
+
+	/**
+	 * Index of the last busy span beginning at or before the given time, or
+	 * -1 if there is none.
+	 */
+	private int floor(long time) {
+		int lo = 0, hi = count - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (begins[mid] <= time) {
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return hi;
+	}
+
+	private static void checkSize(List<Interval> goals, List<Interval> ranges) {
+		if (goals.size() != ranges.size()) {
+			throw new IllegalArgumentException("must provide one range per goal, got " + goals.size() + " goals and " + ranges.size() + " ranges");
+		}
+	}
+}
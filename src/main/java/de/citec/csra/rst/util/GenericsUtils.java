@@ -17,18 +17,54 @@
 package de.citec.csra.rst.util;
 
 import com.google.protobuf.ByteString;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 import rst.generic.KeyValuePairType.KeyValuePair;
 import rst.generic.ValueType.Value;
 import static rst.generic.ValueType.Value.Type.*;
 
 /**
  * Utility class for an easy manipulation of {@link rst.generic.KeyValuePairType.KeyValuePair KeyValuePair} objects.
+ * All methods are thread-safe. Frequently used values such as {@code null},
+ * booleans, small integers and the empty string are converted to shared
+ * {@link rst.generic.ValueType.Value} instances. Homogeneous arrays of
+ * numbers and booleans can be converted from and to primitive arrays, or read
+ * through list views that decode an element only when it is accessed.
  * @author nkoester
  */
 public class GenericsUtils {
 
-    private static final KeyValuePair.Builder PAIRBLD = KeyValuePair.newBuilder();
-	private static final Value.Builder VALBLD = PAIRBLD.getValueBuilder();
+	private static final int SMALL_MIN = -128;
+	private static final int SMALL_MAX = 1023;
+	private static final Value[] SMALL_INTS = new Value[SMALL_MAX - SMALL_MIN + 1];
+
+	/**
+	 * Shared {@link rst.generic.ValueType.Value} of type {@link rst.generic.ValueType.Value.Type#VOID}.
+	 */
+	public static final Value VOID_VALUE = Value.newBuilder().setType(VOID).build();
+	/**
+	 * Shared {@link rst.generic.ValueType.Value} holding {@code true}.
+	 */
+	public static final Value TRUE_VALUE = Value.newBuilder().setType(BOOL).setBool(true).build();
+	/**
+	 * Shared {@link rst.generic.ValueType.Value} holding {@code false}.
+	 */
+	public static final Value FALSE_VALUE = Value.newBuilder().setType(BOOL).setBool(false).build();
+	/**
+	 * Shared {@link rst.generic.ValueType.Value} holding the empty string.
+	 */
+	public static final Value EMPTY_STRING_VALUE = Value.newBuilder().setType(STRING).setString("").build();
+
+	static {
+		for (int i = SMALL_MIN; i <= SMALL_MAX; i++) {
+			SMALL_INTS[i - SMALL_MIN] = Value.newBuilder().setType(INT).setInt(i).build();
+		}
+	}
 	
     /**
      * Creates a {@link rst.generic.KeyValuePairType.KeyValuePair} for any given String and object. The given object is casted to the 
@@ -41,11 +77,42 @@ public class GenericsUtils {
 	 * @throws IllegalArgumentException if the object cannot be casted into an appropriate {@link rst.generic.ValueType.Value}.
      */
     public static KeyValuePair getKeyValuePair(String key, Object value) throws IllegalArgumentException {
-        PAIRBLD.clear();
-        PAIRBLD.setKey(key);
-        PAIRBLD.setValue(objectToValue(value));
-        return PAIRBLD.build();
+        return KeyValuePair.newBuilder().setKey(key).setValue(objectToValue(value)).build();
     }
+
+	/**
+	 * Converts all entries of a map to {@link rst.generic.KeyValuePairType.KeyValuePair KeyValuePairs}
+	 * in the map's iteration order.
+	 * 
+	 * @see de.citec.csra.rst.util.GenericsUtils#getKeyValuePair
+	 * @param map the entries to convert.
+	 * @return a list containing one KeyValuePair per map entry.
+	 * @throws IllegalArgumentException if one of the values cannot be casted into an appropriate {@link rst.generic.ValueType.Value}.
+	 */
+	public static List<KeyValuePair> toKeyValuePairs(Map<String, ?> map) throws IllegalArgumentException {
+		List<KeyValuePair> pairs = new ArrayList<>(map.size());
+		for (Map.Entry<String, ?> e : map.entrySet()) {
+			pairs.add(getKeyValuePair(e.getKey(), e.getValue()));
+		}
+		return pairs;
+	}
+
+	/**
+	 * Converts a list of {@link rst.generic.KeyValuePairType.KeyValuePair KeyValuePairs}
+	 * to a map of plain java objects. The map preserves the order of the list,
+	 * later pairs replace earlier ones with the same key.
+	 * 
+	 * @see de.citec.csra.rst.util.GenericsUtils#valueToObject
+	 * @param pairs the pairs to convert.
+	 * @return a map containing the keys and converted values of the pairs.
+	 */
+	public static Map<String, Object> toMap(List<KeyValuePair> pairs) {
+		Map<String, Object> map = new LinkedHashMap<>((int) (pairs.size() / 0.75f) + 1);
+		for (KeyValuePair pair : pairs) {
+			map.put(pair.getKey(), valueToObject(pair.getValue()));
+		}
+		return map;
+	}
 	
 	/**
 	 * Retrieves a plain java object from a given {@link rst.generic.ValueType.Value}.
@@ -90,29 +157,373 @@ public class GenericsUtils {
 	 * and converted as an according {@link rst.generic.ValueType.Value} type.
 	 * An {@link IllegalArgumentException} is raised otherwise. Only supports basic types that are
 	 * specified as an enumeration item in {@link rst.generic.ValueType.Value Value}.
+	 * Object arrays, collections and arrays of {@code int}, {@code long},
+	 * {@code double} and {@code boolean} are converted to values of type
+	 * {@link rst.generic.ValueType.Value.Type#ARRAY}. Numbers are stored as
+	 * 32-bit {@code int}, longs outside that range are rejected.
 	 * @param object the object to convert.
 	 * @return a value with the appropriate type.
 	 * @throws IllegalArgumentException if the object cannot be casted into an appropriate {@link rst.generic.ValueType.Value}.
 	 */
 	public static Value objectToValue(Object object) {
-		VALBLD.clear();
 		if (object == null) {
-            VALBLD.setType(VOID);
-        } else if (object instanceof String) {
-            VALBLD.setType(STRING).setString((String) object);
-        } else if (object instanceof Double || object instanceof Float) {
-            VALBLD.setType(DOUBLE).setDouble((double) object);
-        } else if (object instanceof Integer) {
-            VALBLD.setType(INT).setInt((int) object);
-        } else if (object instanceof Long) {
-            VALBLD.setType(INT).setInt((int) ((long) object));
-        } else if (object instanceof Boolean) {
-            VALBLD.setType(BOOL).setBool((boolean) object);
-        } else if (object instanceof ByteString) {
-            VALBLD.setType(BINARY).setBinary((ByteString) object);
-        } else {
-            throw new IllegalArgumentException("Unknown type: " + object + " - " + object.getClass());
-        }
-		return VALBLD.build();
+			return VOID_VALUE;
+		} else if (object instanceof String) {
+			String string = (String) object;
+			return string.isEmpty() ? EMPTY_STRING_VALUE : Value.newBuilder().setType(STRING).setString(string).build();
+		} else if (object instanceof Double || object instanceof Float) {
+			return Value.newBuilder().setType(DOUBLE).setDouble(((Number) object).doubleValue()).build();
+		} else if (object instanceof Integer) {
+			return intValue((int) object);
+		} else if (object instanceof Long) {
+			return intValue(toInt((long) object));
+		} else if (object instanceof Boolean) {
+			return ((boolean) object) ? TRUE_VALUE : FALSE_VALUE;
+		} else if (object instanceof ByteString) {
+			return Value.newBuilder().setType(BINARY).setBinary((ByteString) object).build();
+		} else if (object instanceof long[]) {
+			return arrayToValue((long[]) object);
+		} else if (object instanceof int[]) {
+			return arrayToValue((int[]) object);
+		} else if (object instanceof double[]) {
+			return arrayToValue((double[]) object);
+		} else if (object instanceof boolean[]) {
+			return arrayToValue((boolean[]) object);
+		} else if (object instanceof Object[]) {
+			Value.Builder array = Value.newBuilder().setType(ARRAY);
+			for (Object o : (Object[]) object) {
+				array.addArray(objectToValue(o));
+			}
+			return array.build();
+		} else if (object instanceof Collection) {
+			Value.Builder array = Value.newBuilder().setType(ARRAY);
+			for (Object o : (Collection<?>) object) {
+				array.addArray(objectToValue(o));
+			}
+			return array.build();
+		} else {
+			throw new IllegalArgumentException("Unknown type: " + object + " - " + object.getClass());
+		}
+	}
+
+	/**
+	 * Converts numbers to a value of type {@link rst.generic.ValueType.Value.Type#ARRAY}
+	 * holding elements of type {@link rst.generic.ValueType.Value.Type#INT}.
+	 * Elements are stored as 32-bit {@code int}, so every number has to lie
+	 * between {@link Integer#MIN_VALUE} and {@link Integer#MAX_VALUE}.
+	 * @param array the numbers to convert.
+	 * @return an array value.
+	 * @throws IllegalArgumentException if a number does not fit into an {@code int}.
+	 */
+	public static Value arrayToValue(long[] array) throws IllegalArgumentException {
+		Value.Builder value = Value.newBuilder().setType(ARRAY);
+		for (long l : array) {
+			value.addArray(intValue(toInt(l)));
+		}
+		return value.build();
+	}
+
+	/**
+	 * Narrows a number to the 32-bit {@code int} of
+	 * {@link rst.generic.ValueType.Value.Type#INT} values.
+	 */
+	private static int toInt(long l) throws IllegalArgumentException {
+		try {
+			return Math.toIntExact(l);
+		} catch (ArithmeticException ex) {
+			throw new IllegalArgumentException("Number exceeds the int range: " + l, ex);
+		}
+	}
+
+	/**
+	 * Converts numbers to a value of type {@link rst.generic.ValueType.Value.Type#ARRAY}
+	 * holding elements of type {@link rst.generic.ValueType.Value.Type#INT}.
+	 * @param array the numbers to convert.
+	 * @return an array value.
+	 */
+	public static Value arrayToValue(int[] array) {
+		Value.Builder value = Value.newBuilder().setType(ARRAY);
+		for (int i : array) {
+			value.addArray(intValue(i));
+		}
+		return value.build();
+	}
+
+	/**
+	 * Converts numbers to a value of type {@link rst.generic.ValueType.Value.Type#ARRAY}
+	 * holding elements of type {@link rst.generic.ValueType.Value.Type#DOUBLE}.
+	 * @param array the numbers to convert.
+	 * @return an array value.
+	 */
+	public static Value arrayToValue(double[] array) {
+		Value.Builder value = Value.newBuilder().setType(ARRAY);
+		for (double d : array) {
+			value.addArray(Value.newBuilder().setType(DOUBLE).setDouble(d));
+		}
+		return value.build();
+	}
+
+	/**
+	 * Converts booleans to a value of type {@link rst.generic.ValueType.Value.Type#ARRAY}
+	 * holding the shared elements {@link #TRUE_VALUE} and {@link #FALSE_VALUE}.
+	 * @param array the booleans to convert.
+	 * @return an array value.
+	 */
+	public static Value arrayToValue(boolean[] array) {
+		Value.Builder value = Value.newBuilder().setType(ARRAY);
+		for (boolean b : array) {
+			value.addArray(b ? TRUE_VALUE : FALSE_VALUE);
+		}
+		return value.build();
+	}
+
+	/**
+	 * Decodes an array value whose elements are all of type
+	 * {@link rst.generic.ValueType.Value.Type#INT}.
+	 * @param value the array value.
+	 * @return the numbers of the array.
+	 * @throws IllegalArgumentException if the value is no array or an element has another type.
+	 */
+	public static long[] valueToLongArray(Value value) throws IllegalArgumentException {
+		return asLongList(value).toLongArray();
+	}
+
+	/**
+	 * Decodes an array value whose elements are all of type
+	 * {@link rst.generic.ValueType.Value.Type#DOUBLE}.
+	 * @param value the array value.
+	 * @return the numbers of the array.
+	 * @throws IllegalArgumentException if the value is no array or an element has another type.
+	 */
+	public static double[] valueToDoubleArray(Value value) throws IllegalArgumentException {
+		return asDoubleList(value).toDoubleArray();
+	}
+
+	/**
+	 * Decodes an array value whose elements are all of type
+	 * {@link rst.generic.ValueType.Value.Type#BOOL}.
+	 * @param value the array value.
+	 * @return the booleans of the array.
+	 * @throws IllegalArgumentException if the value is no array or an element has another type.
+	 */
+	public static boolean[] valueToBooleanArray(Value value) throws IllegalArgumentException {
+		return asBooleanList(value).toBooleanArray();
+	}
+
+	/**
+	 * Creates a read-only view of an array value with elements of type
+	 * {@link rst.generic.ValueType.Value.Type#INT}. Elements are decoded when
+	 * they are accessed, {@link LongView#getLong(int)} does so without boxing.
+	 * @param value the array value.
+	 * @return a list backed by the value.
+	 * @throws IllegalArgumentException if the value is no array.
+	 */
+	public static LongView asLongList(Value value) throws IllegalArgumentException {
+		return new LongView(checkArray(value));
+	}
+
+	/**
+	 * Creates a read-only view of an array value with elements of type
+	 * {@link rst.generic.ValueType.Value.Type#DOUBLE}. Elements are decoded when
+	 * they are accessed, {@link DoubleView#getDouble(int)} does so without boxing.
+	 * @param value the array value.
+	 * @return a list backed by the value.
+	 * @throws IllegalArgumentException if the value is no array.
+	 */
+	public static DoubleView asDoubleList(Value value) throws IllegalArgumentException {
+		return new DoubleView(checkArray(value));
+	}
+
+	/**
+	 * Creates a read-only view of an array value with elements of type
+	 * {@link rst.generic.ValueType.Value.Type#BOOL}. Elements are decoded when
+	 * they are accessed, {@link BooleanView#getBoolean(int)} does so without boxing.
+	 * @param value the array value.
+	 * @return a list backed by the value.
+	 * @throws IllegalArgumentException if the value is no array.
+	 */
+	public static BooleanView asBooleanList(Value value) throws IllegalArgumentException {
+		return new BooleanView(checkArray(value));
+	}
+
+	/**
+	 * Copies numbers into a primitive array.
+	 * @param numbers the numbers to copy, must not contain {@code null}.
+	 * @return the numbers as {@code long} in iteration order.
+	 */
+	public static long[] toLongArray(Collection<? extends Number> numbers) {
+		long[] array = new long[numbers.size()];
+		int i = 0;
+		for (Number n : numbers) {
+			array[i++] = n.longValue();
+		}
+		return array;
+	}
+
+	/**
+	 * Copies numbers into a primitive array.
+	 * @param numbers the numbers to copy, must not contain {@code null}.
+	 * @return the numbers as {@code double} in iteration order.
+	 */
+	public static double[] toDoubleArray(Collection<? extends Number> numbers) {
+		double[] array = new double[numbers.size()];
+		int i = 0;
+		for (Number n : numbers) {
+			array[i++] = n.doubleValue();
+		}
+		return array;
+	}
+
+	/**
+	 * Copies booleans into a primitive array.
+	 * @param booleans the booleans to copy, must not contain {@code null}.
+	 * @return the booleans in iteration order.
+	 */
+	public static boolean[] toBooleanArray(Collection<Boolean> booleans) {
+		boolean[] array = new boolean[booleans.size()];
+		int i = 0;
+		for (Boolean b : booleans) {
+			array[i++] = b;
+		}
+		return array;
+	}
+
+	/**
+	 * Read-only list of the numbers in an array value.
+	 */
+	public static final class LongView extends AbstractList<Long> implements RandomAccess {
+
+		private final Value array;
+
+		private LongView(Value array) {
+			this.array = array;
+		}
+
+		/**
+		 * @param index the index of the element.
+		 * @return the element at the given index.
+		 * @throws IllegalArgumentException if the element is not of type {@link rst.generic.ValueType.Value.Type#INT}.
+		 */
+		public long getLong(int index) throws IllegalArgumentException {
+			return element(array, index, INT).getInt();
+		}
+
+		public long[] toLongArray() throws IllegalArgumentException {
+			long[] values = new long[size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = getLong(i);
+			}
+			return values;
+		}
+
+		@Override
+		public Long get(int index) {
+			return getLong(index);
+		}
+
+		@Override
+		public int size() {
+			return array.getArrayCount();
+		}
+	}
+
+	/**
+	 * Read-only list of the numbers in an array value.
+	 */
+	public static final class DoubleView extends AbstractList<Double> implements RandomAccess {
+
+		private final Value array;
+
+		private DoubleView(Value array) {
+			this.array = array;
+		}
+
+		/**
+		 * @param index the index of the element.
+		 * @return the element at the given index.
+		 * @throws IllegalArgumentException if the element is not of type {@link rst.generic.ValueType.Value.Type#DOUBLE}.
+		 */
+		public double getDouble(int index) throws IllegalArgumentException {
+			return element(array, index, DOUBLE).getDouble();
+		}
+
+		public double[] toDoubleArray() throws IllegalArgumentException {
+			double[] values = new double[size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = getDouble(i);
+			}
+			return values;
+		}
+
+		@Override
+		public Double get(int index) {
+			return getDouble(index);
+		}
+
+		@Override
+		public int size() {
+			return array.getArrayCount();
+		}
+	}
+
+	/**
+	 * Read-only list of the booleans in an array value.
+	 */
+	public static final class BooleanView extends AbstractList<Boolean> implements RandomAccess {
+
+		private final Value array;
+
+		private BooleanView(Value array) {
+			this.array = array;
+		}
+
+		/**
+		 * @param index the index of the element.
+		 * @return the element at the given index.
+		 * @throws IllegalArgumentException if the element is not of type {@link rst.generic.ValueType.Value.Type#BOOL}.
+		 */
+		public boolean getBoolean(int index) throws IllegalArgumentException {
+			return element(array, index, BOOL).getBool();
+		}
+
+		public boolean[] toBooleanArray() throws IllegalArgumentException {
+			boolean[] values = new boolean[size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = getBoolean(i);
+			}
+			return values;
+		}
+
+		@Override
+		public Boolean get(int index) {
+			return getBoolean(index);
+		}
+
+		@Override
+		public int size() {
+			return array.getArrayCount();
+		}
+	}
+
+	private static Value checkArray(Value value) {
+		if (value.getType() != ARRAY) {
+			throw new IllegalArgumentException("Not an array: " + value.getType());
+		}
+		return value;
+	}
+
+	private static Value element(Value array, int index, Value.Type type) {
+		Value element = array.getArray(index);
+		if (element.getType() != type) {
+			throw new IllegalArgumentException("Element " + index + " is of type " + element.getType() + ", expected " + type);
+		}
+		return element;
+	}
+
+	private static Value intValue(int value) {
+		if (value >= SMALL_MIN && value <= SMALL_MAX) {
+			return SMALL_INTS[value - SMALL_MIN];
+		}
+		return Value.newBuilder().setType(INT).setInt(value).build();
 	}
 }
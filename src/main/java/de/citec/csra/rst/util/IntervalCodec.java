@@ -0,0 +1,313 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import rst.timing.IntervalType.Interval;
+
+/**
+ * Compact binary encoding of interval lists. Every interval is written as
+ * the zig-zag varint delta of its begin to the previous begin followed by
+ * the zig-zag varint of its duration, so sorted timelines with regular
+ * spacing take a few bytes per interval instead of a nested protocol buffer
+ * message. The order of the intervals is preserved, unsorted lists are
+ * supported but encode less compactly.
+ * <p>
+ * The blocked format additionally restarts the deltas every
+ * {@code blockSize} intervals and stores the offset of every block, so a
+ * range of intervals can be decoded without decoding everything before it.
+ * The layout is:
+ * <pre>
+ * plain:   0, count, (begin delta, duration)*
+ * blocked: 1, count, blockSize, offset*, (begin delta, duration)*
+ * </pre>
+ * where offsets are four byte big-endian integers relative to the first
+ * block and all other numbers are varints. Decoding methods read from the
+ * buffer's position without modifying the buffer.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class IntervalCodec {
+
+	private final static byte PLAIN = 0;
+	private final static byte BLOCKED = 1;
+	private final static int MAX_VARINT = 10;
+
+	/**
+	 * Upper bound of the encoded size of the given number of intervals.
+	 *
+	 * @param count the number of intervals.
+	 * @param blockSize the block size or 0 for the plain format.
+	 * @return the maximum number of bytes the encoding takes.
+	 */
+	public static int maxSize(int count, int blockSize) {
+		long size = 1 + Frames.MAX_HEADER + 2L * MAX_VARINT * count;
+		if (blockSize > 0) {
+			size += Frames.MAX_HEADER + 4L * blocks(count, blockSize);
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many intervals to encode: " + count);
+		}
+		return (int) size;
+	}
+
+	public static byte[] encode(List<Interval> intervals) {
+		return encode(intervals, 0);
+	}
+
+	/**
+	 * @param intervals the intervals to encode.
+	 * @param blockSize the number of intervals per block, or 0 for the plain
+	 * format.
+	 * @return the encoded intervals.
+	 */
+	public static byte[] encode(List<Interval> intervals, int blockSize) {
+		int count = intervals.size();
+		long[] begins = new long[count];
+		long[] ends = new long[count];
+		for (int i = 0; i < count; i++) {
+			Interval interval = intervals.get(i);
+			begins[i] = interval.getBegin().getTime();
+			ends[i] = interval.getEnd().getTime();
+		}
+		return encode(begins, ends, count, blockSize);
+	}
+
+	public static byte[] encode(long[] begins, long[] ends, int count, int blockSize) {
+		ByteBuffer out = ByteBuffer.allocate(maxSize(count, blockSize));
+		encode(begins, ends, count, blockSize, out);
+		return Arrays.copyOf(out.array(), out.position());
+	}
+
+	/**
+	 * Encodes intervals at the position of the given buffer.
+	 *
+	 * @param begins the interval begins.
+	 * @param ends the interval ends.
+	 * @param count the number of intervals.
+	 * @param blockSize the number of intervals per block, or 0 for the plain
+	 * format.
+	 * @param out the buffer to write to, see {@link #maxSize(int, int)}.
+	 * @return the number of bytes written.
+	 */
+	public static int encode(long[] begins, long[] ends, int count, int blockSize, ByteBuffer out) {
+		if (blockSize < 0) {
+			throw new IllegalArgumentException("block size must not be negative, got " + blockSize);
+		}
+		int start = out.position();
+		out.put(blockSize == 0 ? PLAIN : BLOCKED);
+		Frames.writeLength(out, count);
+		if (blockSize == 0) {
+			writeRun(begins, ends, 0, count, out);
+			return out.position() - start;
+		}
+		Frames.writeLength(out, blockSize);
+		int table = out.position();
+		int blocks = blocks(count, blockSize);
+		ByteBuffer offsets = out.duplicate().order(ByteOrder.BIG_ENDIAN);
+		out.position(table + 4 * blocks);
+		int data = out.position();
+		for (int b = 0; b < blocks; b++) {
+			offsets.putInt(table + 4 * b, out.position() - data);
+			writeRun(begins, ends, b * blockSize, Math.min(count, (b + 1) * blockSize), out);
+		}
+		return out.position() - start;
+	}
+
+	/**
+	 * @param in the encoded intervals.
+	 * @return the number of encoded intervals.
+	 */
+	public static int count(ByteBuffer in) {
+		return new Header(in).count;
+	}
+
+	public static List<Interval> decode(ByteBuffer in) {
+		Header h = new Header(in);
+		long[] begins = new long[h.count];
+		long[] ends = new long[h.count];
+		decode(h, 0, h.count, begins, ends);
+		List<Interval> intervals = new ArrayList<>(h.count);
+		for (int i = 0; i < h.count; i++) {
+			intervals.add(PrimitiveIntervals.toRst(begins[i], ends[i]));
+		}
+		return intervals;
+	}
+
+	/**
+	 * Decodes all intervals into the given arrays.
+	 *
+	 * @param in the encoded intervals.
+	 * @param begins receives the interval begins.
+	 * @param ends receives the interval ends.
+	 * @return the number of decoded intervals.
+	 */
+	public static int decode(ByteBuffer in, long[] begins, long[] ends) {
+		Header h = new Header(in);
+		return decode(h, 0, h.count, begins, ends);
+	}
+
+	/**
+	 * Decodes the intervals with indices from {@code from} inclusive to
+	 * {@code to} exclusive into the beginning of the given arrays. In the
+	 * blocked format, only the blocks containing the range are read.
+	 *
+	 * @param in the encoded intervals.
+	 * @param from the index of the first interval to decode.
+	 * @param to the index after the last interval to decode.
+	 * @param begins receives the interval begins.
+	 * @param ends receives the interval ends.
+	 * @return the number of decoded intervals.
+	 */
+	public static int decode(ByteBuffer in, int from, int to, long[] begins, long[] ends) {
+		Header h = new Header(in);
+		if (from < 0 || to > h.count || from > to) {
+			throw new IndexOutOfBoundsException("range [" + from + ", " + to + ") out of [0, " + h.count + ")");
+		}
+		return decode(h, from, to, begins, ends);
+	}
+
+	private static int decode(Header h, int from, int to, long[] begins, long[] ends) {
+		if (from >= to) {
+			return 0;
+		}
+		ByteBuffer buf = h.buffer;
+		int index;
+		if (h.blockSize > 0) {
+			int block = from / h.blockSize;
+			buf.position(h.data + buf.getInt(h.table + 4 * block));
+			index = block * h.blockSize;
+		} else {
+			index = 0;
+		}
+		long begin = 0;
+		int n = 0;
+		try {
+			while (index < to) {
+				if (h.blockSize > 0 && index % h.blockSize == 0) {
+					begin = 0;
+				}
+				begin += unzigzag(readVarint(buf));
+				long end = begin + unzigzag(readVarint(buf));
+				if (index >= from) {
+					begins[n] = begin;
+					ends[n] = end;
+					n++;
+				}
+				index++;
+			}
+		} catch (BufferUnderflowException ex) {
+			throw new IllegalArgumentException("truncated interval encoding", ex);
+		}
+		return n;
+	}
+
+	private static void writeRun(long[] begins, long[] ends, int from, int to, ByteBuffer out) {
+		long prev = 0;
+		for (int i = from; i < to; i++) {
+			writeVarint(out, zigzag(begins[i] - prev));
+			writeVarint(out, zigzag(ends[i] - begins[i]));
+			prev = begins[i];
+		}
+	}
+
+	private static int blocks(int count, int blockSize) {
+		return blockSize == 0 ? 0 : (count + blockSize - 1) / blockSize;
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarint(ByteBuffer out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	private static long readVarint(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 7 * MAX_VARINT; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("malformed varint in interval encoding");
+	}
+
+	/**
+	 * Parsed header of an encoding, on a private view of the buffer.
+	 */
+	private static class Header {
+
+		private final ByteBuffer buffer;
+		private final int count;
+		private final int blockSize;
+		private final int table;
+		private final int data;
+
+		Header(ByteBuffer in) {
+			buffer = in.duplicate().order(ByteOrder.BIG_ENDIAN);
+			try {
+				byte format = buffer.get();
+				count = readLength();
+				if (format == PLAIN) {
+					blockSize = 0;
+					table = data = buffer.position();
+				} else if (format == BLOCKED) {
+					blockSize = readLength();
+					if (blockSize <= 0) {
+						throw new IllegalArgumentException("malformed interval encoding, block size " + blockSize);
+					}
+					table = buffer.position();
+					data = table + 4 * blocks(count, blockSize);
+					if (data > buffer.limit()) {
+						throw new IllegalArgumentException("truncated interval encoding");
+					}
+					buffer.position(data);
+				} else {
+					throw new IllegalArgumentException("unknown interval encoding " + format);
+				}
+			} catch (BufferUnderflowException ex) {
+				throw new IllegalArgumentException("truncated interval encoding", ex);
+			}
+		}
+
+		private int readLength() {
+			long header = Frames.peekLength(buffer, buffer.position());
+			if (header < 0) {
+				throw new IllegalArgumentException("malformed interval encoding");
+			}
+			buffer.position(buffer.position() + Frames.prefix(header));
+			return Frames.length(header);
+		}
+	}
+}
@@ -0,0 +1,335 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import net.time4j.range.MomentInterval;
+import rst.communicationpatterns.ResourceAllocationType.ResourceAllocation;
+import rst.communicationpatterns.ResourceAllocationType.ResourceAllocation.Policy;
+import rst.communicationpatterns.ResourceAllocationType.ResourceAllocation.Priority;
+import rst.timing.IntervalType.Interval;
+
+/**
+ * Columnar store of intervals outside the Java heap. Every row holds the
+ * begin and end of an interval in microseconds and, for rows added from
+ * allocations, the resource id, priority and policy. Columns live in direct
+ * buffers, so millions of rows cost no garbage collection work, and rows are
+ * only turned into rst or time4j objects when requested.
+ * <p>
+ * Range queries use binary search while rows are added in order of their
+ * begin, and fall back to a linear scan otherwise. Instances are not
+ * thread-safe.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class IntervalStore {
+
+	public final static int DEFAULT_CAPACITY = 1024;
+
+	private final static Priority[] PRIORITIES = Priority.values();
+	private final static Policy[] POLICIES = Policy.values();
+	private final static byte NONE = -1;
+
+	private final Map<String, Integer> resourceIndex = new HashMap<>();
+	private final List<String> resources = new ArrayList<>();
+	private LongBuffer begins;
+	private LongBuffer ends;
+	private IntBuffer resourceColumn;
+	private ByteBuffer priorities;
+	private ByteBuffer policies;
+	private int capacity;
+	private int size;
+	private boolean sorted = true;
+	private long maxLength;
+
+	public IntervalStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity the initial number of rows, the store grows as needed.
+	 */
+	public IntervalStore(int capacity) {
+		allocate(Math.max(1, capacity));
+	}
+
+	public int add(Interval slot) {
+		return add(slot.getBegin().getTime(), slot.getEnd().getTime(), -1, NONE, NONE);
+	}
+
+	public int add(MomentInterval slot) {
+		return add(IntervalUtils.fromT4j(slot));
+	}
+
+	public int add(long begin, long end) {
+		return add(begin, end, -1, NONE, NONE);
+	}
+
+	/**
+	 * Adds one row per resource of the allocation, or a single row without
+	 * resource if it has none.
+	 *
+	 * @param allocation the allocation to add.
+	 * @return the index of the last added row.
+	 */
+	public int add(ResourceAllocation allocation) {
+		long begin = allocation.getSlot().getBegin().getTime();
+		long end = allocation.getSlot().getEnd().getTime();
+		byte priority = (byte) allocation.getPriority().ordinal();
+		byte policy = (byte) allocation.getPolicy().ordinal();
+		if (allocation.getResourceIdsCount() == 0) {
+			return add(begin, end, -1, priority, policy);
+		}
+		int row = -1;
+		for (String id : allocation.getResourceIdsList()) {
+			row = add(begin, end, resource(id), priority, policy);
+		}
+		return row;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isSorted() {
+		return sorted;
+	}
+
+	public void clear() {
+		size = 0;
+		sorted = true;
+		maxLength = 0;
+	}
+
+	public long getBegin(int row) {
+		return begins.get(check(row));
+	}
+
+	public long getEnd(int row) {
+		return ends.get(check(row));
+	}
+
+	/**
+	 * @param row the row index.
+	 * @return the resource id of the row or {@code null} if it has none.
+	 */
+	public String getResource(int row) {
+		int r = resourceColumn.get(check(row));
+		return r < 0 ? null : resources.get(r);
+	}
+
+	/**
+	 * @param row the row index.
+	 * @return the priority of the row or {@code null} if it has none.
+	 */
+	public Priority getPriority(int row) {
+		byte p = priorities.get(check(row));
+		return p < 0 ? null : PRIORITIES[p];
+	}
+
+	/**
+	 * @param row the row index.
+	 * @return the policy of the row or {@code null} if it has none.
+	 */
+	public Policy getPolicy(int row) {
+		byte p = policies.get(check(row));
+		return p < 0 ? null : POLICIES[p];
+	}
+
+	public Interval toRst(int row) {
+		return PrimitiveIntervals.toRst(getBegin(row), getEnd(row));
+	}
+
+	public MomentInterval toT4j(int row) {
+		return IntervalUtils.fromRst(toRst(row));
+	}
+
+	/**
+	 * Visits all rows that begin in {@code [from, to)}.
+	 *
+	 * @param from the earliest begin, inclusive.
+	 * @param to the latest begin, exclusive.
+	 * @param rows receives the matching row indices in ascending order.
+	 */
+	public void scan(long from, long to, IntConsumer rows) {
+		if (sorted) {
+			for (int i = lowerBound(from); i < size && begins.get(i) < to; i++) {
+				rows.accept(i);
+			}
+		} else {
+			for (int i = 0; i < size; i++) {
+				long b = begins.get(i);
+				if (b >= from && b < to) {
+					rows.accept(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits all rows that overlap {@code [from, to)}.
+	 *
+	 * @param from the begin of the range, inclusive.
+	 * @param to the end of the range, exclusive.
+	 * @param rows receives the matching row indices in ascending order.
+	 */
+	public void overlapping(long from, long to, IntConsumer rows) {
+		overlapping(from, to, -1, rows);
+	}
+
+	/**
+	 * Visits all rows of the given resource that overlap {@code [from, to)}.
+	 *
+	 * @param resource the resource id.
+	 * @param from the begin of the range, inclusive.
+	 * @param to the end of the range, exclusive.
+	 * @param rows receives the matching row indices in ascending order.
+	 */
+	public void overlapping(String resource, long from, long to, IntConsumer rows) {
+		Integer r = resourceIndex.get(resource);
+		if (r != null) {
+			overlapping(from, to, r, rows);
+		}
+	}
+
+	/**
+	 * Counts the rows that overlap {@code [from, to)}.
+	 *
+	 * @param from the begin of the range, inclusive.
+	 * @param to the end of the range, exclusive.
+	 * @return the number of overlapping rows.
+	 */
+	public int countOverlapping(long from, long to) {
+		int[] count = new int[1];
+		overlapping(from, to, -1, i -> count[0]++);
+		return count[0];
+	}
+
+	/**
+	 * Converts the rows that overlap {@code [from, to)} to rst intervals.
+	 *
+	 * @param from the begin of the range, inclusive.
+	 * @param to the end of the range, exclusive.
+	 * @return the overlapping intervals in row order.
+	 */
+	public List<Interval> export(long from, long to) {
+		List<Interval> intervals = new ArrayList<>();
+		overlapping(from, to, -1, i -> intervals.add(toRst(i)));
+		return intervals;
+	}
+
+	private void overlapping(long from, long to, int resource, IntConsumer rows) {
+		int first = 0;
+		int last = size;
+		if (sorted) {
+			long earliest = from - maxLength;
+			first = lowerBound(earliest > from ? Long.MIN_VALUE : earliest + 1);
+			last = lowerBound(to);
+		}
+		for (int i = first; i < last; i++) {
+			if (begins.get(i) < to && ends.get(i) > from
+					&& (resource < 0 || resourceColumn.get(i) == resource)) {
+				rows.accept(i);
+			}
+		}
+	}
+
+	private int add(long begin, long end, int resource, byte priority, byte policy) {
+		if (size == capacity) {
+			grow();
+		}
+		if (size > 0 && begin < begins.get(size - 1)) {
+			sorted = false;
+		}
+		maxLength = Math.max(maxLength, end - begin);
+		begins.put(size, begin);
+		ends.put(size, end);
+		resourceColumn.put(size, resource);
+		priorities.put(size, priority);
+		policies.put(size, policy);
+		return size++;
+	}
+
+	private int resource(String id) {
+		Integer r = resourceIndex.get(id);
+		if (r == null) {
+			r = resources.size();
+			resources.add(id);
+			resourceIndex.put(id, r);
+		}
+		return r;
+	}
+
+	/**
+	 * Index of the first row beginning at or after the given time, only
+	 * valid while the rows are sorted.
+	 */
+	private int lowerBound(long time) {
+		int lo = 0, hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (begins.get(mid) < time) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private int check(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("row " + row + " out of [0, " + size + ")");
+		}
+		return row;
+	}
+
+	private void grow() {
+		LongBuffer b = begins, e = ends;
+		IntBuffer r = resourceColumn;
+		ByteBuffer p = priorities, q = policies;
+		allocate(capacity * 2);
+		for (int i = 0; i < size; i++) {
+			begins.put(i, b.get(i));
+			ends.put(i, e.get(i));
+			resourceColumn.put(i, r.get(i));
+			priorities.put(i, p.get(i));
+			policies.put(i, q.get(i));
+		}
+	}
+
+	private void allocate(int rows) {
+		if (rows > Integer.MAX_VALUE / 8 || rows <= 0) {
+			throw new IllegalStateException("interval store cannot hold " + rows + " rows");
+		}
+		capacity = rows;
+		begins = ByteBuffer.allocateDirect(rows * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+		ends = ByteBuffer.allocateDirect(rows * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+		resourceColumn = ByteBuffer.allocateDirect(rows * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		priorities = ByteBuffer.allocateDirect(rows);
+		policies = ByteBuffer.allocateDirect(rows);
+	}
+}
@@ -16,9 +16,11 @@
  */
 package de.citec.csra.rst.util;
 
-import static de.citec.csra.rst.util.StringRepresentation.shortString;
+import de.citec.csra.rst.metrics.Metrics;
+import static de.citec.csra.rst.util.StringRepresentation.lazyString;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import static java.util.concurrent.TimeUnit.MICROSECONDS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -51,7 +53,7 @@ public class IntervalUtils {
 			MomentInterval m2 = (MomentInterval) o2;
 			long length1 = m1.getRealDuration().getSeconds() * 1000000000 + m1.getRealDuration().getFraction();
 			long length2 = m2.getRealDuration().getSeconds() * 1000000000 + m2.getRealDuration().getFraction();
-			return (int) (length1 - length2);
+			return Long.compare(length1, length2);
 		}
 	}
 
@@ -66,7 +68,11 @@ public class IntervalUtils {
 	}
 
 	public static Interval buildRelativeRst(long delay, long duration, TimeUnit unit) {
-		long now = currentTimeInMicros();
+		return buildRelativeRst(delay, duration, unit, time);
+	}
+
+	public static Interval buildRelativeRst(long delay, long duration, TimeUnit unit, TimeSource source) {
+		long now = source.currentTimeInMicros();
 		delay = MICROSECONDS.convert(delay, unit);
 		duration = MICROSECONDS.convert(duration, unit);
 		return Interval.newBuilder().
@@ -81,6 +87,7 @@ public class IntervalUtils {
 	}
 
 	private final static SystemClock CLOCK = SystemClock.INSTANCE;
+	private static volatile TimeSource time = TimeSource.PRECISE;
 	private final static Comparator<ChronoInterval<Moment>> BY_LENGTH = new LengthComparator();
 	private final static Comparator<ChronoInterval<Moment>> BY_BEGIN = MomentInterval.comparator();
 
@@ -101,11 +108,15 @@ public class IntervalUtils {
 			if (stopMoment.isAfter(startMoment)) {
 				return MomentInterval.between(startMoment, stopMoment);
 			} else {
-				LOG.log(Level.WARNING, "Invalid interval with negative duration: ''{0}''", shortString(i));
+				if (LOG.isLoggable(Level.WARNING)) {
+					LOG.log(Level.WARNING, "Invalid interval with negative duration: ''{0}''", lazyString(i));
+				}
 				return null;
 			}
 		} else {
-			LOG.log(Level.WARNING, "Invalid interval: ''{0}''", shortString(i));
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Invalid interval: ''{0}''", lazyString(i));
+			}
 			return null;
 		}
 	}
@@ -130,7 +141,9 @@ public class IntervalUtils {
 					setEnd(Timestamp.newBuilder().setTime(stop)).
 					build();
 		} else {
-			LOG.log(Level.WARNING, "Invalid interval: ''{0}''", shortString(i));
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Invalid interval: ''{0}''", lazyString(i));
+			}
 			return null;
 		}
 	}
@@ -140,23 +153,83 @@ public class IntervalUtils {
 	}
 
 	public static Interval findRemaining(Interval goal, List<Interval> blocks) {
-		return fromT4j(findRemaining(fromRst(goal), fromRst(blocks)));
+		return findRemaining(goal, blocks, time);
+	}
+
+	public static Interval findRemaining(Interval goal, List<Interval> blocks, TimeSource source) {
+		long start = Metrics.start();
+		Interval found = PrimitiveIntervals.findRemaining(goal, blocks, source.currentTimeInMicros());
+		Metrics.queried("findRemaining", blocks == null ? 0 : blocks.size(), start);
+		return found;
 	}
 
 	public static Interval findFirst(Interval goal, Interval range, List<Interval> blocks) {
-		return fromT4j(findFirst(fromRst(goal), fromRst(range), fromRst(blocks)));
+		long start = Metrics.start();
+		Interval found = PrimitiveIntervals.findFirst(goal, range, blocks);
+		Metrics.queried("findFirst", blocks == null ? 0 : blocks.size(), start);
+		return found;
 	}
 
 	public static Interval findMax(Interval goal, Interval range, List<Interval> blocks) {
-		return fromT4j(findMax(fromRst(goal), fromRst(range), fromRst(blocks)));
+		long start = Metrics.start();
+		Interval found = PrimitiveIntervals.findMax(goal, range, blocks);
+		Metrics.queried("findMax", blocks == null ? 0 : blocks.size(), start);
+		return found;
+	}
+
+	/**
+	 * Finds the resource with the earliest free slot in parallel, see
+	 * {@link ResourceSearch}.
+	 *
+	 * @param goal the desired slot.
+	 * @param range the range to search in.
+	 * @param blocks the blocks of every resource by resource id.
+	 * @return the resource id along with its slot, or {@code null}.
+	 */
+	public static Map.Entry<String, Interval> findFirst(Interval goal, Interval range, Map<String, List<Interval>> blocks) {
+		return ResourceSearch.findFirst(goal, range, blocks);
+	}
+
+	/**
+	 * Finds the resource with the longest free slot in parallel, see
+	 * {@link ResourceSearch}.
+	 *
+	 * @param goal the desired slot.
+	 * @param range the range to search in.
+	 * @param blocks the blocks of every resource by resource id.
+	 * @return the resource id along with its slot, or {@code null}.
+	 */
+	public static Map.Entry<String, Interval> findMax(Interval goal, Interval range, Map<String, List<Interval>> blocks) {
+		return ResourceSearch.findMax(goal, range, blocks);
 	}
 
 	public static Interval findComplete(Interval goal, Interval range, List<Interval> blocks) {
-		return fromT4j(findComplete(fromRst(goal), fromRst(range), fromRst(blocks)));
+		long start = Metrics.start();
+		Interval found = PrimitiveIntervals.findComplete(goal, range, blocks);
+		Metrics.queried("findComplete", blocks == null ? 0 : blocks.size(), start);
+		return found;
+	}
+
+	public static List<Interval> findFirstAll(List<Interval> goals, List<Interval> ranges, List<Interval> blocks) {
+		long start = Metrics.start();
+		List<Interval> found = FreeTime.of(blocks).findFirstAll(goals, ranges);
+		Metrics.queried("findFirstAll", blocks == null ? 0 : blocks.size(), start);
+		return found;
+	}
+
+	public static List<Interval> findMaxAll(List<Interval> goals, List<Interval> ranges, List<Interval> blocks) {
+		long start = Metrics.start();
+		List<Interval> found = FreeTime.of(blocks).findMaxAll(goals, ranges);
+		Metrics.queried("findMaxAll", blocks == null ? 0 : blocks.size(), start);
+		return found;
 	}
 
 	public static Interval includeNow(Interval goal) {
-		return fromT4j(includeNow(fromRst(goal)));
+		return includeNow(goal, time);
+	}
+
+	public static Interval includeNow(Interval goal, TimeSource source) {
+		return fromT4j(includeNow(fromRst(goal), source));
 	}
 
 	public static MomentInterval findFirst(MomentInterval g, MomentInterval r, List<MomentInterval> b) {
@@ -194,8 +267,12 @@ public class IntervalUtils {
 	}
 
 	public static MomentInterval findRemaining(MomentInterval g, List<MomentInterval> b) {
+		return findRemaining(g, b, time);
+	}
+
+	public static MomentInterval findRemaining(MomentInterval g, List<MomentInterval> b, TimeSource source) {
 		if (g != null && b != null) {
-			Moment now = CLOCK.currentTime();
+			Moment now = now(source);
 			IntervalCollection<Moment> blocking = IntervalCollection.onMomentAxis().plus(b);
 
 			for (ChronoInterval<Moment> m : blocking.getIntervals()) {
@@ -209,7 +286,7 @@ public class IntervalUtils {
 			IntervalCollection<Moment> overlaps = free.intersect(goal);
 
 			if (!overlaps.isEmpty()) {
-				return includeNow((MomentInterval) overlaps.getIntervals().stream().min(BY_BEGIN).get());
+				return includeNow((MomentInterval) overlaps.getIntervals().stream().min(BY_BEGIN).get(), now);
 			}
 		}
 		return null;
@@ -232,12 +309,41 @@ public class IntervalUtils {
 		return null;
 	}
 
+	/**
+	 * Selects the time source used by all methods that do not take one
+	 * explicitly, {@link TimeSource#PRECISE} by default.
+	 *
+	 * @param source the new global time source.
+	 */
+	public static void setTimeSource(TimeSource source) {
+		time = source;
+	}
+
+	public static TimeSource getTimeSource() {
+		return time;
+	}
+
 	public static long currentTimeInMicros() {
-		return CLOCK.currentTimeInMicros();
+		return time.currentTimeInMicros();
 	}
 
 	public static MomentInterval includeNow(MomentInterval g) {
-		Moment now = CLOCK.currentTime();
+		return includeNow(g, time);
+	}
+
+	public static MomentInterval includeNow(MomentInterval g, TimeSource source) {
+		return includeNow(g, now(source));
+	}
+
+	private static Moment now(TimeSource source) {
+		if (source == TimeSource.PRECISE) {
+			return CLOCK.currentTime();
+		}
+		long micros = source.currentTimeInMicros();
+		return Moment.of(Math.floorDiv(micros, 1000000), (int) Math.floorMod(micros, 1000000) * 1000, TimeScale.POSIX);
+	}
+
+	private static MomentInterval includeNow(MomentInterval g, Moment now) {
 		if (g.contains(now)) {
 			return g;
 		} else if (g.isAfter(now)) {
@@ -0,0 +1,605 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import com.google.protobuf.ByteString;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of timestamped payloads in memory-mapped segment
+ * files. Every record is length-framed (see {@link Frames}) and holds the
+ * timestamp, a CRC32 checksum of timestamp and payload, and the payload as
+ * produced by a {@link SerializationService}:
+ * <pre>
+ * length (varint), time (8 bytes), crc (4 bytes), payload
+ * </pre>
+ * Appending only copies the record into the mapped segment. Records become
+ * durable with {@link #commit(long)}, which forces the segment for all
+ * threads waiting at that time at once. Segments are rolled when full and
+ * keep a sparse index from time to offset, which is stored next to sealed
+ * segments and lets {@link #replay(long, long, java.util.function.ObjLongConsumer)}
+ * start close to the requested range. Segment files keep their mapped
+ * length, the records end where the first invalid record begins. On opening,
+ * a torn record at the end of the last segment, as left by a crash, is
+ * detected by its checksum and cleared.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ * @param <T> the type of the journaled data.
+ */
+public class Journal<T> implements Closeable {
+
+	private final static Logger LOG = Logger.getLogger(Journal.class.getName());
+	private final static String SEGMENT = ".journal";
+	private final static String INDEX = ".index";
+	private final static int INDEX_MAGIC = 0x4a4e4c58;
+	private final static int RECORD_HEADER = 12;
+
+	public final static int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	public final static int DEFAULT_INDEX_INTERVAL = 4096;
+
+	private final Path directory;
+	private final SerializationService<T> service;
+	private final int segmentSize;
+	private final int indexInterval;
+	private final List<Segment> sealed = new ArrayList<>();
+	private final Object commitLock = new Object();
+	private Segment active;
+	private long appended;
+	private volatile long durable;
+	private boolean closed;
+
+	public Journal(Path directory, SerializationService<T> service) throws IOException {
+		this(directory, service, DEFAULT_SEGMENT_SIZE, DEFAULT_INDEX_INTERVAL);
+	}
+
+	/**
+	 * Opens or creates a journal and recovers its last segment.
+	 *
+	 * @param directory the directory holding the segment files.
+	 * @param service the service used to serialize and deserialize data.
+	 * @param segmentSize the size of a segment file in bytes.
+	 * @param indexInterval the number of bytes between index entries.
+	 * @throws IOException if the segments cannot be opened.
+	 */
+	public Journal(Path directory, SerializationService<T> service, int segmentSize, int indexInterval) throws IOException {
+		if (segmentSize <= Frames.MAX_HEADER + RECORD_HEADER || indexInterval <= 0) {
+			throw new IllegalArgumentException("invalid segment size " + segmentSize + " or index interval " + indexInterval);
+		}
+		this.directory = Files.createDirectories(directory);
+		this.service = service;
+		this.segmentSize = segmentSize;
+		this.indexInterval = indexInterval;
+
+		List<Long> numbers = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				try {
+					numbers.add(Long.valueOf(name.substring(0, name.length() - SEGMENT.length())));
+				} catch (NumberFormatException ex) {
+					LOG.log(Level.WARNING, "Ignoring unknown file ''{0}''.", file);
+				}
+			}
+		}
+		numbers.sort(null);
+		for (int i = 0; i < numbers.size() - 1; i++) {
+			sealed.add(Segment.load(this, numbers.get(i)));
+		}
+		long last = numbers.isEmpty() ? 0 : numbers.get(numbers.size() - 1);
+		active = Segment.recover(this, last, segmentSize);
+	}
+
+	/**
+	 * Serializes and appends data. The record is visible to
+	 * {@link #replay(long, long, java.util.function.ObjLongConsumer)} at once
+	 * but only durable after {@link #commit(long)}.
+	 *
+	 * @param time the timestamp of the record, usually in microseconds.
+	 * @param data the data to append.
+	 * @return the sequence number of the record for {@link #commit(long)}.
+	 * @throws IOException if a new segment cannot be created.
+	 */
+	public long append(long time, T data) throws IOException {
+		ByteString payload = service.serialize(data);
+		if (payload == null) {
+			throw new IllegalArgumentException("cannot serialize " + data);
+		}
+		return append(time, payload);
+	}
+
+	public long append(long time, ByteString payload) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(timeBytes(time));
+		crc.update(payload.asReadOnlyByteBuffer());
+		int length = RECORD_HEADER + payload.size();
+		int size = Frames.headerSize(length) + length;
+		synchronized (this) {
+			if (closed) {
+				throw new IOException("journal is closed");
+			}
+			if (active.remaining() < size) {
+				roll(size);
+			}
+			active.write(time, (int) crc.getValue(), length, payload);
+			return ++appended;
+		}
+	}
+
+	/**
+	 * Makes all records up to the given sequence number durable. Threads
+	 * committing concurrently share a single flush of the segment.
+	 *
+	 * @param sequence a sequence number returned by {@link #append(long, com.google.protobuf.ByteString)}.
+	 */
+	public void commit(long sequence) {
+		if (durable >= sequence) {
+			return;
+		}
+		synchronized (commitLock) {
+			if (durable >= sequence) {
+				return;
+			}
+			long target;
+			Segment segment;
+			synchronized (this) {
+				target = appended;
+				segment = active;
+			}
+			segment.force();
+			durable = target;
+		}
+	}
+
+	/**
+	 * Makes all records appended so far durable.
+	 */
+	public void commit() {
+		long target;
+		synchronized (this) {
+			target = appended;
+		}
+		commit(target);
+	}
+
+	/**
+	 * Passes all records with a timestamp in {@code [from, to)} to the given
+	 * consumer in the order they were appended.
+	 *
+	 * @param from the earliest timestamp, inclusive.
+	 * @param to the latest timestamp, exclusive.
+	 * @param consumer receives the deserialized data and timestamp of every
+	 * record in range.
+	 * @throws IOException if a segment cannot be read.
+	 */
+	public void replay(long from, long to, ObjLongConsumer<T> consumer) throws IOException {
+		List<Segment> segments;
+		ByteBuffer buffer;
+		int end;
+		Index index;
+		synchronized (this) {
+			segments = new ArrayList<>(sealed);
+			buffer = active.buffer.duplicate();
+			end = active.end;
+			index = active.index.copy();
+		}
+		for (Segment s : segments) {
+			if (s.index.overlaps(from, to)) {
+				try (FileChannel channel = FileChannel.open(s.path, StandardOpenOption.READ)) {
+					replay(channel.map(FileChannel.MapMode.READ_ONLY, 0, s.end), s.index, s.end, from, to, consumer);
+				}
+			}
+		}
+		if (index.overlaps(from, to)) {
+			replay(buffer, index, end, from, to, consumer);
+		}
+	}
+
+	/**
+	 * Number of records appended since the journal was opened.
+	 *
+	 * @return the sequence number of the last record.
+	 */
+	public synchronized long getSequence() {
+		return appended;
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (commitLock) {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				active.force();
+				active.close();
+			}
+		}
+	}
+
+	private void replay(ByteBuffer buffer, Index index, int end, long from, long to, ObjLongConsumer<T> consumer) {
+		int offset = index.seek(from);
+		while (offset < end) {
+			long header = Frames.peekLength(buffer, offset);
+			int prefix = Frames.prefix(header);
+			int length = Frames.length(header);
+			long time = buffer.getLong(offset + prefix);
+			if (time >= to && index.ordered) {
+				return;
+			}
+			if (time >= from && time < to) {
+				consumer.accept(service.deserialize(Frames.slice(buffer, offset + prefix + RECORD_HEADER, length - RECORD_HEADER)), time);
+			}
+			offset += prefix + length;
+		}
+	}
+
+	/**
+	 * Seals the active segment and starts a new one. Replay maps the records
+	 * of sealed segments on demand, up to the end stored in their index.
+	 */
+	private void roll(int size) throws IOException {
+		active.seal();
+		active.index.store(indexPath(active.number));
+		sealed.add(active);
+		active = Segment.recover(this, active.number + 1, Math.max(segmentSize, size));
+	}
+
+	private Path segmentPath(long number) {
+		return directory.resolve(String.format("%020d", number) + SEGMENT);
+	}
+
+	private Path indexPath(long number) {
+		return directory.resolve(String.format("%020d", number) + INDEX);
+	}
+
+	private static byte[] timeBytes(long time) {
+		return ByteBuffer.allocate(8).putLong(time).array();
+	}
+
+	/**
+	 * Validates the record at the given offset.
+	 *
+	 * @return the size of the record including its length prefix, or 0 if
+	 * there is no valid record.
+	 */
+	private static int check(ByteBuffer buffer, int offset, int limit) {
+		long header = Frames.peekLength(buffer, offset);
+		if (header < 0) {
+			return 0;
+		}
+		int prefix = Frames.prefix(header);
+		int length = Frames.length(header);
+		if (length < RECORD_HEADER || offset + prefix + length > limit || offset + prefix + length < 0) {
+			return 0;
+		}
+		int at = offset + prefix;
+		CRC32 crc = new CRC32();
+		crc.update(timeBytes(buffer.getLong(at)));
+		crc.update(Frames.slice(buffer, at + RECORD_HEADER, length - RECORD_HEADER));
+		return (int) crc.getValue() == buffer.getInt(at + 8) ? prefix + length : 0;
+	}
+
+	/**
+	 * Sparse index from time to offset of a single segment. Entry {@code i}
+	 * holds an offset and the maximum timestamp of all records before it.
+	 */
+	private static class Index {
+
+		private long[] before = new long[16];
+		private int[] offsets = new int[16];
+		private int count;
+		private int next;
+		private long min = Long.MAX_VALUE;
+		private long max = Long.MIN_VALUE;
+		private boolean ordered = true;
+		private int end;
+
+		void add(long time, int offset, int size, int interval) {
+			if (offset >= next) {
+				if (count == offsets.length) {
+					before = Arrays.copyOf(before, count * 2);
+					offsets = Arrays.copyOf(offsets, count * 2);
+				}
+				before[count] = max;
+				offsets[count] = offset;
+				count++;
+				next = offset + interval;
+			}
+			ordered &= time >= max;
+			min = Math.min(min, time);
+			max = Math.max(max, time);
+			end = offset + size;
+		}
+
+		/**
+		 * Offset from which on all records at or after the given time are
+		 * found.
+		 */
+		int seek(long time) {
+			int lo = 0, hi = count - 1, found = 0;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				if (before[mid] < time) {
+					found = offsets[mid];
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			return found;
+		}
+
+		boolean overlaps(long from, long to) {
+			return count > 0 && max >= from && min < to;
+		}
+
+		Index copy() {
+			Index c = new Index();
+			c.before = Arrays.copyOf(before, count);
+			c.offsets = Arrays.copyOf(offsets, count);
+			c.count = count;
+			c.next = next;
+			c.min = min;
+			c.max = max;
+			c.ordered = ordered;
+			c.end = end;
+			return c;
+		}
+
+		/**
+		 * Checks a loaded index against its segment: entries must point to
+		 * valid records in ascending order, and the records following the
+		 * last entry must end exactly at the stored end.
+		 */
+		boolean matches(ByteBuffer buffer) {
+			if (count == 0) {
+				return end == 0;
+			}
+			if (offsets[0] != 0 || min > max) {
+				return false;
+			}
+			for (int i = 0; i < count; i++) {
+				if (offsets[i] >= end || i > 0 && (offsets[i] <= offsets[i - 1] || before[i] < before[i - 1])
+						|| check(buffer, offsets[i], end) == 0) {
+					return false;
+				}
+			}
+			int offset = offsets[count - 1];
+			int size;
+			while (offset < end && (size = check(buffer, offset, end)) > 0) {
+				offset += size;
+			}
+			return offset == end;
+		}
+
+		void store(Path path) {
+			try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(path))) {
+				out.writeInt(INDEX_MAGIC);
+				out.writeInt(end);
+				out.writeLong(min);
+				out.writeLong(max);
+				out.writeBoolean(ordered);
+				out.writeInt(count);
+				for (int i = 0; i < count; i++) {
+					out.writeLong(before[i]);
+					out.writeInt(offsets[i]);
+				}
+			} catch (IOException ex) {
+				LOG.log(Level.WARNING, "Could not store index ''{0}'' ({1}), it will be rebuilt.", new Object[]{path, ex});
+			}
+		}
+
+		/**
+		 * Reads a stored index, or returns {@code null} if it is missing or
+		 * does not fit a segment of the given size.
+		 */
+		static Index load(Path path, long size) {
+			try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+				if (in.readInt() != INDEX_MAGIC) {
+					return null;
+				}
+				Index index = new Index();
+				index.end = in.readInt();
+				index.min = in.readLong();
+				index.max = in.readLong();
+				index.ordered = in.readBoolean();
+				index.count = in.readInt();
+				if (index.end < 0 || index.end > size || index.count < 0 || index.count > index.end) {
+					return null;
+				}
+				index.before = new long[index.count];
+				index.offsets = new int[index.count];
+				for (int i = 0; i < index.count; i++) {
+					index.before[i] = in.readLong();
+					index.offsets[i] = in.readInt();
+				}
+				return index;
+			} catch (IOException ex) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * A segment file. Only the active segment is mapped for writing.
+	 */
+	private static class Segment {
+
+		private final long number;
+		private final Path path;
+		private final Index index;
+		private final int interval;
+		private FileChannel channel;
+		private MappedByteBuffer buffer;
+		private int end;
+
+		private Segment(long number, Path path, Index index, int interval) {
+			this.number = number;
+			this.path = path;
+			this.index = index;
+			this.interval = interval;
+			this.end = index.end;
+		}
+
+		/**
+		 * Opens a sealed segment, rebuilding its index if necessary.
+		 */
+		static Segment load(Journal<?> journal, long number) throws IOException {
+			Path path = journal.segmentPath(number);
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				Index index = Index.load(journal.indexPath(number), channel.size());
+				ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				if (index == null || !index.matches(buffer)) {
+					if (index != null) {
+						LOG.log(Level.WARNING, "Index of ''{0}'' does not match its records, rebuilding.", path);
+					}
+					index = scan(buffer, journal.indexInterval);
+					index.store(journal.indexPath(number));
+				}
+				return new Segment(number, path, index, journal.indexInterval);
+			}
+		}
+
+		/**
+		 * Opens or creates a segment for appending. Everything after the
+		 * last valid record is cleared, so that the file is never cut while
+		 * it may still be mapped.
+		 */
+		static Segment recover(Journal<?> journal, long number, int capacity) throws IOException {
+			Path path = journal.segmentPath(number);
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			try {
+				long size = channel.size();
+				Index index = scan(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), journal.indexInterval);
+				Files.deleteIfExists(journal.indexPath(number));
+				Segment segment = new Segment(number, path, index, journal.indexInterval);
+				segment.channel = channel;
+				segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, size));
+				if (clear(segment.buffer, index.end, (int) size)) {
+					LOG.log(Level.WARNING, "Discarding torn tail of ''{0}'' after offset {1}.", new Object[]{path, index.end});
+				}
+				return segment;
+			} catch (IOException | RuntimeException ex) {
+				channel.close();
+				throw ex;
+			}
+		}
+
+		/**
+		 * Zeroes the given range, stale records after the end must not be
+		 * picked up again once new records have been appended in front of
+		 * them. Only bytes that are not zero yet are written.
+		 *
+		 * @return whether the range contained any data.
+		 */
+		private static boolean clear(ByteBuffer buffer, int from, int to) {
+			boolean data = false;
+			int i = from;
+			for (; i < to && (i & 7) != 0; i++) {
+				if (buffer.get(i) != 0) {
+					buffer.put(i, (byte) 0);
+					data = true;
+				}
+			}
+			for (; i + 8 <= to; i += 8) {
+				if (buffer.getLong(i) != 0) {
+					buffer.putLong(i, 0);
+					data = true;
+				}
+			}
+			for (; i < to; i++) {
+				if (buffer.get(i) != 0) {
+					buffer.put(i, (byte) 0);
+					data = true;
+				}
+			}
+			return data;
+		}
+
+		private static Index scan(ByteBuffer buffer, int interval) {
+			Index index = new Index();
+			int offset = 0;
+			int size;
+			while ((size = check(buffer, offset, buffer.limit())) > 0) {
+				long time = buffer.getLong(offset + Frames.prefix(Frames.peekLength(buffer, offset)));
+				index.add(time, offset, size, interval);
+				offset += size;
+			}
+			index.end = offset;
+			return index;
+		}
+
+		int remaining() {
+			return buffer.capacity() - end;
+		}
+
+		void write(long time, int crc, int length, ByteString payload) {
+			int offset = end;
+			buffer.position(offset);
+			Frames.writeLength(buffer, length);
+			buffer.putLong(time);
+			buffer.putInt(crc);
+			payload.copyTo(buffer);
+			end = buffer.position();
+			index.add(time, offset, end - offset, interval);
+		}
+
+		void force() {
+			MappedByteBuffer b = buffer;
+			if (b != null) {
+				b.force();
+			}
+		}
+
+		/**
+		 * Forces and closes the segment. The file keeps its mapped length,
+		 * the mapping itself is released by the garbage collector once the
+		 * last replay snapshot is gone.
+		 */
+		void seal() throws IOException {
+			force();
+			buffer = null;
+			close();
+		}
+
+		void close() throws IOException {
+			if (channel != null) {
+				channel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import com.google.protobuf.ByteString;
+import rst.communicationpatterns.TaskStateType.TaskState;
+import rst.communicationpatterns.TaskStateType.TaskState.Origin;
+import rst.communicationpatterns.TaskStateType.TaskState.State;
+
+/**
+ * Payload of a {@link TaskState} that is decoded on first access. The
+ * converter is looked up through {@link SerializationService#forSchema(ByteString)}
+ * by the raw wire schema, and the payload is decoded at most once, so
+ * consumers that only look at state, origin or serial never pay for it.
+ * Instances are thread-safe.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class LazyPayload<T> {
+
+	private final static Object UNDECODED = new Object();
+
+	private final TaskState task;
+	private volatile Object payload = UNDECODED;
+
+	public LazyPayload(TaskState task) {
+		this.task = task;
+	}
+
+	public TaskState getTaskState() {
+		return task;
+	}
+
+	public State getState() {
+		return task.getState();
+	}
+
+	public Origin getOrigin() {
+		return task.getOrigin();
+	}
+
+	public int getSerial() {
+		return task.getSerial();
+	}
+
+	public ByteString getRawPayload() {
+		return task.getPayload();
+	}
+
+	public ByteString getWireSchema() {
+		return task.getWireSchema();
+	}
+
+	/**
+	 * @return whether the payload has been decoded already.
+	 */
+	public boolean isDecoded() {
+		return payload != UNDECODED;
+	}
+
+	/**
+	 * Decodes the payload on the first call and returns the same result on
+	 * all later calls.
+	 *
+	 * @return the decoded payload or {@code null} if the conversion failed.
+	 */
+	public T get() {
+		Object p = payload;
+		if (p == UNDECODED) {
+			synchronized (this) {
+				p = payload;
+				if (p == UNDECODED) {
+					SerializationService<T> service = SerializationService.forSchema(task.getWireSchema());
+					payload = p = service.deserialize(task.getPayload());
+				}
+			}
+		}
+		return (T) p;
+	}
+}
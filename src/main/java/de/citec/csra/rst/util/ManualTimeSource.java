@@ -0,0 +1,67 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time source that only changes when told to, for deterministic tests and
+ * benchmarks. Instances are thread-safe.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class ManualTimeSource implements TimeSource {
+
+	private final AtomicLong now;
+
+	public ManualTimeSource() {
+		this(0);
+	}
+
+	/**
+	 * @param now the initial time in microseconds.
+	 */
+	public ManualTimeSource(long now) {
+		this.now = new AtomicLong(now);
+	}
+
+	@Override
+	public long currentTimeInMicros() {
+		return now.get();
+	}
+
+	public void set(long now) {
+		this.now.set(now);
+	}
+
+	public void set(long time, TimeUnit unit) {
+		set(TimeUnit.MICROSECONDS.convert(time, unit));
+	}
+
+	/**
+	 * Moves the time forward or, for negative amounts, backward.
+	 *
+	 * @param amount the amount to move the time by.
+	 * @param unit the unit of the amount.
+	 * @return the new time in microseconds.
+	 */
+	public long advance(long amount, TimeUnit unit) {
+		return now.addAndGet(TimeUnit.MICROSECONDS.convert(amount, unit));
+	}
+}
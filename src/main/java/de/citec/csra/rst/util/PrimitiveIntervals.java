@@ -0,0 +1,501 @@
+/*
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import static de.citec.csra.rst.util.StringRepresentation.lazyString;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import rst.timing.IntervalType.Interval;
+import rst.timing.TimestampType.Timestamp;
+
+/**
+ * Interval queries on plain microsecond time stamps. All intervals are treated
+ * as half-open {@code [begin, end)} just like their time4j counterparts in
+ * {@link IntervalUtils}, but blocks are kept in parallel {@code long[]} arrays
+ * that are sorted by begin. The primitive queries write their result into a
+ * caller-supplied {@code long[2]} and allocate nothing, the
+ * {@link rst.timing.IntervalType.Interval} variants only allocate the result.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class PrimitiveIntervals {
+
+	private final static Logger LOG = Logger.getLogger(PrimitiveIntervals.class.getName());
+	private final static int INSERTION_THRESHOLD = 16;
+
+	public final static int BEGIN = 0;
+	public final static int END = 1;
+
+	private final static class Scratch {
+
+		long[] begins = new long[16];
+		long[] ends = new long[16];
+		final long[] result = new long[2];
+
+		void ensure(int size) {
+			if (begins.length < size) {
+				int cap = Math.max(size, begins.length * 2);
+				begins = new long[cap];
+				ends = new long[cap];
+			}
+		}
+	}
+
+	private final static ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+	/**
+	 * Disjoint, non-adjacent busy spans that have been merged from the blocks
+	 * beforehand, such as the ones kept by {@link FreeTime} and
+	 * {@link Timeline}. The span queries below only need these two lookups.
+	 */
+	interface Spans {
+
+		/**
+		 * Earliest free time at or after the given time.
+		 */
+		long freeFrom(long time);
+
+		/**
+		 * Begin of the first busy span after the given free time, or
+		 * {@link Long#MAX_VALUE} if there is none.
+		 */
+		long busyFrom(long free);
+	}
+
+	/**
+	 * Finds the first free slot inside {@code range} that overlaps the goal.
+	 * If no free slot overlaps the goal, the earliest free slot of the range is
+	 * returned instead.
+	 *
+	 * @param gBegin begin of the goal in microseconds.
+	 * @param gEnd end of the goal in microseconds.
+	 * @param rBegin begin of the range in microseconds.
+	 * @param rEnd end of the range in microseconds.
+	 * @param begins block begins, sorted in ascending order.
+	 * @param ends block ends, matching {@code begins}.
+	 * @param count number of blocks to consider.
+	 * @param result receives begin and end of the slot.
+	 * @return {@code true} if a slot was found and written to {@code result}.
+	 */
+	public static boolean findFirst(long gBegin, long gEnd, long rBegin, long rEnd, long[] begins, long[] ends, int count, long[] result) {
+		if (gEnd <= gBegin || rEnd <= rBegin) {
+			return false;
+		}
+		boolean free = false;
+		long fBegin = 0, fEnd = 0;
+		long cursor = rBegin;
+		for (int i = 0; i <= count && cursor < rEnd; i++) {
+			long b = i < count ? begins[i] : rEnd;
+			long e = i < count ? ends[i] : rEnd;
+			if (e <= b && i < count) {
+				continue;
+			}
+			if (b > cursor) {
+				long gapEnd = Math.min(b, rEnd);
+				long oBegin = Math.max(cursor, gBegin);
+				long oEnd = Math.min(gapEnd, gEnd);
+				if (oBegin < oEnd) {
+					return write(result, oBegin, oEnd);
+				}
+				if (!free) {
+					free = true;
+					fBegin = cursor;
+					fEnd = gapEnd;
+				}
+			}
+			cursor = Math.max(cursor, e);
+		}
+		return free && write(result, fBegin, fEnd);
+	}
+
+	/**
+	 * Finds the longest free slot inside {@code range} that overlaps the goal.
+	 * If no free slot overlaps the goal, the longest free slot of the range is
+	 * returned instead. Ties are resolved in favor of the earlier slot.
+	 *
+	 * @param gBegin begin of the goal in microseconds.
+	 * @param gEnd end of the goal in microseconds.
+	 * @param rBegin begin of the range in microseconds.
+	 * @param rEnd end of the range in microseconds.
+	 * @param begins block begins, sorted in ascending order.
+	 * @param ends block ends, matching {@code begins}.
+	 * @param count number of blocks to consider.
+	 * @param result receives begin and end of the slot.
+	 * @return {@code true} if a slot was found and written to {@code result}.
+	 */
+	public static boolean findMax(long gBegin, long gEnd, long rBegin, long rEnd, long[] begins, long[] ends, int count, long[] result) {
+		if (gEnd <= gBegin || rEnd <= rBegin) {
+			return false;
+		}
+		long oBest = 0, oBegin = 0, oEnd = 0;
+		long fBest = 0, fBegin = 0, fEnd = 0;
+		long cursor = rBegin;
+		for (int i = 0; i <= count && cursor < rEnd; i++) {
+			long b = i < count ? begins[i] : rEnd;
+			long e = i < count ? ends[i] : rEnd;
+			if (e <= b && i < count) {
+				continue;
+			}
+			if (b > cursor) {
+				long gapEnd = Math.min(b, rEnd);
+				if (gapEnd - cursor > fBest) {
+					fBest = gapEnd - cursor;
+					fBegin = cursor;
+					fEnd = gapEnd;
+				}
+				long ob = Math.max(cursor, gBegin);
+				long oe = Math.min(gapEnd, gEnd);
+				if (oe - ob > oBest) {
+					oBest = oe - ob;
+					oBegin = ob;
+					oEnd = oe;
+				}
+			}
+			cursor = Math.max(cursor, e);
+		}
+		if (oBest > 0) {
+			return write(result, oBegin, oEnd);
+		}
+		return fBest > 0 && write(result, fBegin, fEnd);
+	}
+
+	/**
+	 * Checks whether the goal lies completely inside a single free slot of
+	 * {@code range}.
+	 *
+	 * @param gBegin begin of the goal in microseconds.
+	 * @param gEnd end of the goal in microseconds.
+	 * @param rBegin begin of the range in microseconds.
+	 * @param rEnd end of the range in microseconds.
+	 * @param begins block begins, sorted in ascending order.
+	 * @param ends block ends, matching {@code begins}.
+	 * @param count number of blocks to consider.
+	 * @param result receives begin and end of the goal if it is free.
+	 * @return {@code true} if the goal is free and was written to {@code result}.
+	 */
+	public static boolean findComplete(long gBegin, long gEnd, long rBegin, long rEnd, long[] begins, long[] ends, int count, long[] result) {
+		if (gEnd <= gBegin || rEnd <= rBegin || gBegin < rBegin || gEnd > rEnd) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			long b = begins[i];
+			long e = ends[i];
+			if (b >= gEnd) {
+				break;
+			}
+			if (e > b && e > gBegin) {
+				return false;
+			}
+		}
+		return write(result, gBegin, gEnd);
+	}
+
+	/**
+	 * Finds the first free slot inside the goal, stretched to include
+	 * {@code now}. Nothing is found if one of the blocks contains {@code now}.
+	 *
+	 * @param gBegin begin of the goal in microseconds.
+	 * @param gEnd end of the goal in microseconds.
+	 * @param now the current time in microseconds.
+	 * @param begins block begins, sorted in ascending order.
+	 * @param ends block ends, matching {@code begins}.
+	 * @param count number of blocks to consider.
+	 * @param result receives begin and end of the slot.
+	 * @return {@code true} if a slot was found and written to {@code result}.
+	 */
+	public static boolean findRemaining(long gBegin, long gEnd, long now, long[] begins, long[] ends, int count, long[] result) {
+		if (gEnd <= gBegin) {
+			return false;
+		}
+		for (int i = 0; i < count && begins[i] <= now; i++) {
+			if (now < ends[i]) {
+				return false;
+			}
+		}
+		long cursor = gBegin;
+		for (int i = 0; i <= count && cursor < gEnd; i++) {
+			long b = i < count ? begins[i] : gEnd;
+			long e = i < count ? ends[i] : gEnd;
+			if (e <= b && i < count) {
+				continue;
+			}
+			if (b > cursor) {
+				return includeNow(cursor, Math.min(b, gEnd), now, result);
+			}
+			cursor = Math.max(cursor, e);
+		}
+		return false;
+	}
+
+	/**
+	 * Stretches the given interval so that it contains {@code now}.
+	 *
+	 * @param begin begin of the interval in microseconds.
+	 * @param end end of the interval in microseconds.
+	 * @param now the current time in microseconds.
+	 * @param result receives begin and end of the stretched interval.
+	 * @return always {@code true}.
+	 */
+	public static boolean includeNow(long begin, long end, long now, long[] result) {
+		if (begin <= now && now < end) {
+			return write(result, begin, end);
+		} else if (begin > now) {
+			return write(result, now, end);
+		} else {
+			return write(result, begin, now);
+		}
+	}
+
+	/**
+	 * Sorts the first {@code count} blocks by begin, keeping the ends aligned.
+	 *
+	 * @param begins block begins.
+	 * @param ends block ends.
+	 * @param count number of blocks to sort.
+	 */
+	public static void sort(long[] begins, long[] ends, int count) {
+		for (int i = 1; i < count; i++) {
+			if (begins[i - 1] > begins[i]) {
+				quickSort(begins, ends, 0, count - 1);
+				return;
+			}
+		}
+	}
+
+	public static Interval findFirst(Interval goal, Interval range, List<Interval> blocks) {
+		if (!valid(goal) || !valid(range) || blocks == null) {
+			return null;
+		}
+		Scratch s = load(blocks);
+		return findFirst(goal.getBegin().getTime(), goal.getEnd().getTime(),
+				range.getBegin().getTime(), range.getEnd().getTime(),
+				s.begins, s.ends, blocks.size(), s.result) ? toRst(s.result) : null;
+	}
+
+	public static Interval findMax(Interval goal, Interval range, List<Interval> blocks) {
+		if (!valid(goal) || !valid(range) || blocks == null) {
+			return null;
+		}
+		Scratch s = load(blocks);
+		return findMax(goal.getBegin().getTime(), goal.getEnd().getTime(),
+				range.getBegin().getTime(), range.getEnd().getTime(),
+				s.begins, s.ends, blocks.size(), s.result) ? toRst(s.result) : null;
+	}
+
+	public static Interval findComplete(Interval goal, Interval range, List<Interval> blocks) {
+		if (!valid(goal) || !valid(range) || blocks == null) {
+			return null;
+		}
+		Scratch s = load(blocks);
+		return findComplete(goal.getBegin().getTime(), goal.getEnd().getTime(),
+				range.getBegin().getTime(), range.getEnd().getTime(),
+				s.begins, s.ends, blocks.size(), s.result) ? goal : null;
+	}
+
+	public static Interval findRemaining(Interval goal, List<Interval> blocks, long now) {
+		if (!valid(goal) || blocks == null) {
+			return null;
+		}
+		Scratch s = load(blocks);
+		return findRemaining(goal.getBegin().getTime(), goal.getEnd().getTime(), now,
+				s.begins, s.ends, blocks.size(), s.result) ? toRst(s.result) : null;
+	}
+
+	/**
+	 * @see #findFirst(long, long, long, long, long[], long[], int, long[])
+	 */
+	static boolean findFirst(long gBegin, long gEnd, long rBegin, long rEnd, Spans spans, long[] result) {
+		if (gEnd <= gBegin || rEnd <= rBegin) {
+			return false;
+		}
+		long from = Math.max(rBegin, gBegin);
+		long to = Math.min(rEnd, gEnd);
+		if (from < to) {
+			long free = spans.freeFrom(from);
+			if (free < to) {
+				return write(result, free, Math.min(to, spans.busyFrom(free)));
+			}
+		}
+		long free = spans.freeFrom(rBegin);
+		if (free < rEnd) {
+			return write(result, free, Math.min(rEnd, spans.busyFrom(free)));
+		}
+		return false;
+	}
+
+	/**
+	 * @see #findMax(long, long, long, long, long[], long[], int, long[])
+	 */
+	static boolean findMax(long gBegin, long gEnd, long rBegin, long rEnd, Spans spans, long[] result) {
+		if (gEnd <= gBegin || rEnd <= rBegin) {
+			return false;
+		}
+		if (longest(Math.max(rBegin, gBegin), Math.min(rEnd, gEnd), spans, result)) {
+			return true;
+		}
+		return longest(rBegin, rEnd, spans, result);
+	}
+
+	/**
+	 * @see #findComplete(long, long, long, long, long[], long[], int, long[])
+	 */
+	static boolean findComplete(long gBegin, long gEnd, long rBegin, long rEnd, Spans spans, long[] result) {
+		if (gEnd <= gBegin || rEnd <= rBegin || gBegin < rBegin || gEnd > rEnd) {
+			return false;
+		}
+		if (spans.freeFrom(gBegin) != gBegin || spans.busyFrom(gBegin) < gEnd) {
+			return false;
+		}
+		return write(result, gBegin, gEnd);
+	}
+
+	/**
+	 * @see #findRemaining(long, long, long, long[], long[], int, long[])
+	 */
+	static boolean findRemaining(long gBegin, long gEnd, long now, Spans spans, long[] result) {
+		if (gEnd <= gBegin || spans.freeFrom(now) != now) {
+			return false;
+		}
+		long free = spans.freeFrom(gBegin);
+		if (free < gEnd) {
+			return includeNow(free, Math.min(gEnd, spans.busyFrom(free)), now, result);
+		}
+		return false;
+	}
+
+	static boolean write(long[] result, long begin, long end) {
+		result[BEGIN] = begin;
+		result[END] = end;
+		return true;
+	}
+
+	public static Interval toRst(long begin, long end) {
+		return Interval.newBuilder().
+				setBegin(Timestamp.newBuilder().setTime(begin)).
+				setEnd(Timestamp.newBuilder().setTime(end)).
+				build();
+	}
+
+	private static Interval toRst(long[] result) {
+		return toRst(result[BEGIN], result[END]);
+	}
+
+	private static boolean valid(Interval i) {
+		if (i == null) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Invalid interval: ''{0}''", lazyString(i));
+			}
+			return false;
+		}
+		if (i.getEnd().getTime() <= i.getBegin().getTime()) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Invalid interval with negative duration: ''{0}''", lazyString(i));
+			}
+			return false;
+		}
+		return true;
+	}
+
+	private static Scratch load(List<Interval> blocks) {
+		Scratch s = SCRATCH.get();
+		int size = blocks.size();
+		s.ensure(size);
+		for (int i = 0; i < size; i++) {
+			Interval b = blocks.get(i);
+			s.begins[i] = b.getBegin().getTime();
+			s.ends[i] = b.getEnd().getTime();
+		}
+		sort(s.begins, s.ends, size);
+		return s;
+	}
+
+	private static boolean longest(long from, long to, Spans spans, long[] result) {
+		long best = 0;
+		long cursor = spans.freeFrom(from);
+		while (cursor < to) {
+			long next = spans.busyFrom(cursor);
+			long stop = Math.min(next, to);
+			if (stop - cursor > best) {
+				best = stop - cursor;
+				write(result, cursor, stop);
+			}
+			if (next >= to) {
+				break;
+			}
+			cursor = spans.freeFrom(next);
+		}
+		return best > 0;
+	}
+
+	private static void quickSort(long[] begins, long[] ends, int lo, int hi) {
+		while (hi - lo >= INSERTION_THRESHOLD) {
+			int mid = (lo + hi) >>> 1;
+			if (begins[mid] < begins[lo]) {
+				swap(begins, ends, mid, lo);
+			}
+			if (begins[hi] < begins[lo]) {
+				swap(begins, ends, hi, lo);
+			}
+			if (begins[hi] < begins[mid]) {
+				swap(begins, ends, hi, mid);
+			}
+			long pivot = begins[mid];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (begins[i] < pivot) {
+					i++;
+				}
+				while (begins[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(begins, ends, i++, j--);
+				}
+			}
+			if (j - lo < hi - i) {
+				quickSort(begins, ends, lo, j);
+				lo = i;
+			} else {
+				quickSort(begins, ends, i, hi);
+				hi = j;
+			}
+		}
+		for (int i = lo + 1; i <= hi; i++) {
+			long b = begins[i];
+			long e = ends[i];
+			int j = i - 1;
+			while (j >= lo && begins[j] > b) {
+				begins[j + 1] = begins[j];
+				ends[j + 1] = ends[j];
+				j--;
+			}
+			begins[j + 1] = b;
+			ends[j + 1] = e;
+		}
+	}
+
+	private static void swap(long[] begins, long[] ends, int i, int j) {
+		long b = begins[i];
+		begins[i] = begins[j];
+		begins[j] = b;
+		long e = ends[i];
+		ends[i] = ends[j];
+		ends[j] = e;
+	}
+}
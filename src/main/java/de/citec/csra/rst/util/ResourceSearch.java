@@ -0,0 +1,231 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import de.citec.csra.rst.metrics.Metrics;
+import static de.citec.csra.rst.util.PrimitiveIntervals.BEGIN;
+import static de.citec.csra.rst.util.PrimitiveIntervals.END;
+import static de.citec.csra.rst.util.StringRepresentation.lazyString;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import rst.timing.IntervalType.Interval;
+
+/**
+ * Searches the free time of many resources at once. Every resource is
+ * queried with the semantics of {@link IntervalUtils#findFirst(Interval, Interval, List)}
+ * or {@link IntervalUtils#findMax(Interval, Interval, List)} on primitive
+ * arrays, and the results are reduced to the best resource. Slots that
+ * overlap the goal are preferred over fallback slots elsewhere in the range,
+ * then the earliest or longest slot wins. Ties go to the resource that comes
+ * first in the iteration order of the given map, so the result does not
+ * depend on how the work was split.
+ * <p>
+ * Resources are split among the tasks of a {@link ForkJoinPool} until at most
+ * {@code threshold} of them remain per task. Inputs below the threshold are
+ * searched in the calling thread.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class ResourceSearch {
+
+	private final static Logger LOG = Logger.getLogger(ResourceSearch.class.getName());
+	public final static int DEFAULT_THRESHOLD = 8;
+
+	private enum Mode {
+		FIRST, MAX
+	}
+
+	/**
+	 * Best slot among a contiguous part of the resources.
+	 */
+	private final static class Best {
+
+		int index = -1;
+		boolean overlaps;
+		long begin;
+		long end;
+
+		void offer(Mode mode, int i, boolean o, long b, long e) {
+			boolean better;
+			if (index < 0 || o != overlaps) {
+				better = index < 0 || o;
+			} else if (mode == Mode.FIRST) {
+				better = b < begin;
+			} else {
+				better = e - b > end - begin;
+			}
+			if (better) {
+				index = i;
+				overlaps = o;
+				begin = b;
+				end = e;
+			}
+		}
+	}
+
+	private final static class Search extends RecursiveTask<Best> {
+
+		private final Mode mode;
+		private final long gBegin, gEnd, rBegin, rEnd;
+		private final List<List<Interval>> blocks;
+		private final int from, to, threshold;
+
+		Search(Mode mode, long gBegin, long gEnd, long rBegin, long rEnd, List<List<Interval>> blocks, int from, int to, int threshold) {
+			this.mode = mode;
+			this.gBegin = gBegin;
+			this.gEnd = gEnd;
+			this.rBegin = rBegin;
+			this.rEnd = rEnd;
+			this.blocks = blocks;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected Best compute() {
+			if (to - from <= threshold) {
+				return search();
+			}
+			int mid = (from + to) >>> 1;
+			Search left = new Search(mode, gBegin, gEnd, rBegin, rEnd, blocks, from, mid, threshold);
+			Search right = new Search(mode, gBegin, gEnd, rBegin, rEnd, blocks, mid, to, threshold);
+			left.fork();
+			Best r = right.compute();
+			Best l = left.join();
+			if (r.index >= 0) {
+				l.offer(mode, r.index, r.overlaps, r.begin, r.end);
+			}
+			return l;
+		}
+
+		private Best search() {
+			Best best = new Best();
+			long[] b = new long[16];
+			long[] e = new long[16];
+			long[] result = new long[2];
+			for (int i = from; i < to; i++) {
+				List<Interval> list = blocks.get(i);
+				if (list == null) {
+					continue;
+				}
+				int count = list.size();
+				if (b.length < count) {
+					b = new long[Math.max(count, b.length * 2)];
+					e = new long[b.length];
+				}
+				for (int k = 0; k < count; k++) {
+					Interval block = list.get(k);
+					b[k] = block.getBegin().getTime();
+					e[k] = block.getEnd().getTime();
+				}
+				PrimitiveIntervals.sort(b, e, count);
+				boolean found = mode == Mode.FIRST
+						? PrimitiveIntervals.findFirst(gBegin, gEnd, rBegin, rEnd, b, e, count, result)
+						: PrimitiveIntervals.findMax(gBegin, gEnd, rBegin, rEnd, b, e, count, result);
+				if (found) {
+					boolean overlaps = result[BEGIN] < gEnd && result[END] > gBegin;
+					best.offer(mode, i, overlaps, result[BEGIN], result[END]);
+				}
+			}
+			return best;
+		}
+	}
+
+	public static Map.Entry<String, Interval> findFirst(Interval goal, Interval range, Map<String, List<Interval>> blocks) {
+		return findFirst(goal, range, blocks, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Finds the resource with the earliest free slot, see
+	 * {@link IntervalUtils#findFirst(Interval, Interval, List)}.
+	 *
+	 * @param goal the desired slot.
+	 * @param range the range to search in.
+	 * @param blocks the blocks of every resource by resource id.
+	 * @param pool the pool to search in.
+	 * @param threshold the number of resources searched by a single task.
+	 * @return the resource id along with its slot, or {@code null} if no
+	 * resource has a free slot.
+	 */
+	public static Map.Entry<String, Interval> findFirst(Interval goal, Interval range, Map<String, List<Interval>> blocks, ForkJoinPool pool, int threshold) {
+		return find(Mode.FIRST, "findFirstResource", goal, range, blocks, pool, threshold);
+	}
+
+	public static Map.Entry<String, Interval> findMax(Interval goal, Interval range, Map<String, List<Interval>> blocks) {
+		return findMax(goal, range, blocks, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Finds the resource with the longest free slot, see
+	 * {@link IntervalUtils#findMax(Interval, Interval, List)}.
+	 *
+	 * @param goal the desired slot.
+	 * @param range the range to search in.
+	 * @param blocks the blocks of every resource by resource id.
+	 * @param pool the pool to search in.
+	 * @param threshold the number of resources searched by a single task.
+	 * @return the resource id along with its slot, or {@code null} if no
+	 * resource has a free slot.
+	 */
+	public static Map.Entry<String, Interval> findMax(Interval goal, Interval range, Map<String, List<Interval>> blocks, ForkJoinPool pool, int threshold) {
+		return find(Mode.MAX, "findMaxResource", goal, range, blocks, pool, threshold);
+	}
+
+	private static Map.Entry<String, Interval> find(Mode mode, String query, Interval goal, Interval range, Map<String, List<Interval>> blocks, ForkJoinPool pool, int threshold) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("threshold must be positive: " + threshold);
+		}
+		if (!valid(goal) || !valid(range) || blocks == null) {
+			return null;
+		}
+		long start = Metrics.start();
+		List<String> ids = new ArrayList<>(blocks.size());
+		List<List<Interval>> lists = new ArrayList<>(blocks.size());
+		int total = 0;
+		for (Map.Entry<String, List<Interval>> entry : blocks.entrySet()) {
+			ids.add(entry.getKey());
+			lists.add(entry.getValue());
+			total += entry.getValue() == null ? 0 : entry.getValue().size();
+		}
+		Search search = new Search(mode, goal.getBegin().getTime(), goal.getEnd().getTime(),
+				range.getBegin().getTime(), range.getEnd().getTime(), lists, 0, lists.size(), threshold);
+		Best best = lists.size() <= threshold ? search.compute() : pool.invoke(search);
+		Metrics.queried(query, total, start);
+		if (best.index < 0) {
+			return null;
+		}
+		return new AbstractMap.SimpleImmutableEntry<>(ids.get(best.index), PrimitiveIntervals.toRst(best.begin, best.end));
+	}
+
+	private static boolean valid(Interval i) {
+		if (i == null || i.getEnd().getTime() <= i.getBegin().getTime()) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Invalid interval: ''{0}''", lazyString(i));
+			}
+			return false;
+		}
+		return true;
+	}
+}
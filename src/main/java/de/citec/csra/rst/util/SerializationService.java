@@ -17,25 +17,54 @@
 package de.citec.csra.rst.util;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+import de.citec.csra.rst.metrics.Metrics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import rsb.InitializeException;
 import rsb.converter.ConversionException;
 import rsb.converter.Converter;
 import rsb.converter.ConverterRepository;
 import rsb.converter.DefaultConverterRepository;
+import rsb.converter.ProtocolBufferConverter;
 
 /**
+ * Serializes and deserializes data with the converters of the default
+ * converter repository. Instances are immutable and thread-safe, shared
+ * instances per data type and wire schema can be obtained with
+ * {@link #forType(java.lang.Class)} and {@link #forSchema(java.lang.String)}.
+ * Batches of data can be serialized into a single buffer of length-framed
+ * payloads (see {@link Frames}) and read back from it.
  *
  * @author Patrick Holthaus
  * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
  */
 public class SerializationService<T> {
 
+	private final static Map<Class<?>, SerializationService<?>> BY_TYPE = new ConcurrentHashMap<>();
+	private final static Map<String, SerializationService<?>> BY_SCHEMA = new ConcurrentHashMap<>();
+	private final static Map<ByteString, SerializationService<?>> BY_SCHEMA_BYTES = new ConcurrentHashMap<>();
+
+	/**
+	 * Minimum batch size that {@link #serializeAll(java.util.List, boolean)}
+	 * encodes in parallel.
+	 */
+	public final static int PARALLEL_THRESHOLD = 256;
+
 	private final Converter<ByteBuffer> converter;
 	private final String schema;
+	private final ByteString schemaBytes;
 	private final Class<T> cls;
+	private final boolean protobuf;
 	
 	public static final ByteString UTF8 = ByteString.copyFromUtf8("utf-8-string");
 	public static final ByteString EMPTY = ByteString.EMPTY;
@@ -45,36 +74,239 @@ public class SerializationService<T> {
 		ConverterRepository<ByteBuffer> def = DefaultConverterRepository.getDefaultConverterRepository();
 		this.converter = def.getConvertersForSerialization().getConverter(type.getName());
 		this.schema = converter.getSignature().getSchema();
+		this.schemaBytes = ByteString.copyFromUtf8(this.schema);
 		this.cls = type;
+		this.protobuf = this.converter instanceof ProtocolBufferConverter && Message.class.isAssignableFrom(type);
 	}
 	
 	public SerializationService(String schema) {
 		ConverterRepository<ByteBuffer> def = DefaultConverterRepository.getDefaultConverterRepository();
 		this.converter = def.getConvertersForDeserialization().getConverter(schema);
 		this.schema = converter.getSignature().getSchema();
+		this.schemaBytes = ByteString.copyFromUtf8(this.schema);
 		this.cls = (Class<T>) this.converter.getSignature().getDataType();
+		this.protobuf = this.converter instanceof ProtocolBufferConverter && Message.class.isAssignableFrom(this.cls);
+	}
+
+	/**
+	 * Returns the shared service for the given data type, creating it on
+	 * first use.
+	 *
+	 * @param <T> the data type.
+	 * @param type the class of the data to serialize.
+	 * @return a shared service for the data type.
+	 * @throws InitializeException if no converter is available for the type.
+	 */
+	public static <T> SerializationService<T> forType(Class<T> type) throws InitializeException {
+		SerializationService<T> service = (SerializationService<T>) BY_TYPE.get(type);
+		if (service == null) {
+			service = new SerializationService<>(type);
+			SerializationService<T> known = (SerializationService<T>) BY_TYPE.putIfAbsent(type, service);
+			if (known != null) {
+				service = known;
+			}
+		}
+		return service;
+	}
+
+	/**
+	 * Returns the shared service for the given wire schema, creating it on
+	 * first use.
+	 *
+	 * @param <T> the data type.
+	 * @param schema the wire schema of the data to deserialize.
+	 * @return a shared service for the wire schema.
+	 */
+	public static <T> SerializationService<T> forSchema(String schema) {
+		return (SerializationService<T>) BY_SCHEMA.computeIfAbsent(schema, SerializationService::new);
+	}
+
+	/**
+	 * Returns the shared service for the given wire schema as it is found in
+	 * messages like {@link rst.communicationpatterns.TaskStateType.TaskState},
+	 * without decoding the schema again on every lookup.
+	 *
+	 * @param <T> the data type.
+	 * @param schema the UTF-8 encoded wire schema of the data to deserialize.
+	 * @return a shared service for the wire schema.
+	 */
+	public static <T> SerializationService<T> forSchema(ByteString schema) {
+		SerializationService<T> service = (SerializationService<T>) BY_SCHEMA_BYTES.get(schema);
+		if (service == null) {
+			service = forSchema(schema.toStringUtf8());
+			BY_SCHEMA_BYTES.putIfAbsent(schema, service);
+		}
+		return service;
 	}
 	
 	public T deserialize(ByteString bytes) {
+		return deserialize(bytes.asReadOnlyByteBuffer());
+	}
+
+	/**
+	 * Deserializes the content between position and limit of the given buffer.
+	 *
+	 * @param bytes the serialized data.
+	 * @return the deserialized data or {@code null} if the conversion failed.
+	 */
+	public T deserialize(ByteBuffer bytes) {
+		Metrics.DESERIALIZED_BYTES.record(bytes.remaining());
 		try {
-			return (T) this.converter.deserialize(this.schema, bytes.asReadOnlyByteBuffer()).getData();
+			return (T) this.converter.deserialize(this.schema, bytes).getData();
 		} catch (ConversionException ex) {
+			Metrics.CONVERSION_FAILURES.increment();
 			Logger.getLogger(SerializationService.class.getName()).log(Level.SEVERE, null, ex);
 			return null;
 		}
 	}
 
+	/**
+	 * Serializes the given data. Protocol buffer messages are written
+	 * directly into the resulting {@link com.google.protobuf.ByteString}, other
+	 * data is copied from the converter's buffer.
+	 *
+	 * @param data the data to serialize.
+	 * @return the serialized data or {@code null} if the conversion failed.
+	 */
 	public ByteString serialize(T data) {
+		ByteString bytes;
+		if (this.protobuf && this.cls.isInstance(data)) {
+			bytes = ((Message) data).toByteString();
+		} else {
+			try {
+				bytes = ByteString.copyFrom(this.converter.serialize(this.cls, data).getSerialization());
+			} catch (ConversionException ex) {
+				Metrics.CONVERSION_FAILURES.increment();
+				Logger.getLogger(SerializationService.class.getName()).log(Level.SEVERE, null, ex);
+				return null;
+			}
+		}
+		Metrics.SERIALIZED_BYTES.record(bytes.size());
+		return bytes;
+	}
+	
+	/**
+	 * Serializes a batch of data into one buffer of length-framed payloads,
+	 * see {@link Frames}.
+	 *
+	 * @param data the data to serialize.
+	 * @return a buffer holding the frames between position and limit, or
+	 * {@code null} if the conversion of an element failed.
+	 */
+	public ByteBuffer serializeAll(List<? extends T> data) {
+		return serializeAll(data, false);
+	}
+
+	/**
+	 * Serializes a batch of data into one buffer of length-framed payloads,
+	 * see {@link Frames}. Protocol buffer messages are written directly into
+	 * the buffer, which is allocated once for the whole batch. If
+	 * {@code parallel} is set, batches of at least
+	 * {@link #PARALLEL_THRESHOLD} elements are encoded in the common fork-join
+	 * pool, every element into its own region of the buffer.
+	 *
+	 * @param data the data to serialize.
+	 * @param parallel whether large batches may be encoded in parallel.
+	 * @return a buffer holding the frames between position and limit, or
+	 * {@code null} if the conversion of an element failed.
+	 */
+	public ByteBuffer serializeAll(List<? extends T> data, boolean parallel) {
+		int count = data.size();
+		parallel &= count >= PARALLEL_THRESHOLD;
+		boolean messages = this.protobuf;
+		for (int i = 0; i < count && messages; i++) {
+			messages = this.cls.isInstance(data.get(i));
+		}
+		if (!messages) {
+			return frame(data, parallel);
+		}
+		int[] offsets = new int[count + 1];
+		for (int i = 0; i < count; i++) {
+			int size = ((Message) data.get(i)).getSerializedSize();
+			offsets[i + 1] = offsets[i] + Frames.headerSize(size) + size;
+			Metrics.SERIALIZED_BYTES.record(size);
+		}
+		byte[] bytes = new byte[offsets[count]];
+		if (parallel) {
+			IntStream.range(0, count).parallel().forEach(i -> write((Message) data.get(i), bytes, offsets[i], offsets[i + 1]));
+		} else {
+			write(data, bytes);
+		}
+		return ByteBuffer.wrap(bytes);
+	}
+
+	/**
+	 * Deserializes all frames between position and limit of the given
+	 * buffer, without moving its position.
+	 *
+	 * @param frames the serialized batch.
+	 * @return the deserialized data, {@code null} for elements whose
+	 * conversion failed. A frame that is cut off ends the batch.
+	 */
+	public List<T> deserializeAll(ByteBuffer frames) {
+		List<T> data = new ArrayList<>();
+		FramedReader<T> reader = new FramedReader<>(this, frames);
+		while (reader.hasNext()) {
+			data.add(reader.next());
+		}
+		return data;
+	}
+
+	public List<T> deserializeAll(ByteString frames) {
+		return deserializeAll(frames.asReadOnlyByteBuffer());
+	}
+
+	private static void write(List<?> data, byte[] bytes) {
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
 		try {
-			return ByteString.copyFrom(this.converter.serialize(this.cls, data).getSerialization());
-		} catch (ConversionException ex) {
-			Logger.getLogger(SerializationService.class.getName()).log(Level.SEVERE, null, ex);
-			return null;
+			for (Object d : data) {
+				Message message = (Message) d;
+				out.writeUInt32NoTag(message.getSerializedSize());
+				message.writeTo(out);
+			}
+			out.checkNoSpaceLeft();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private static void write(Message message, byte[] bytes, int from, int to) {
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes, from, to - from);
+		try {
+			out.writeUInt32NoTag(message.getSerializedSize());
+			message.writeTo(out);
+			out.checkNoSpaceLeft();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * Frames data that is not written by protocol buffers directly, which
+	 * needs one intermediate copy per element.
+	 */
+	private ByteBuffer frame(List<? extends T> data, boolean parallel) {
+		IntStream indices = IntStream.range(0, data.size());
+		ByteString[] payloads = (parallel ? indices.parallel() : indices)
+				.mapToObj(i -> serialize(data.get(i))).toArray(ByteString[]::new);
+		int total = 0;
+		for (ByteString payload : payloads) {
+			if (payload == null) {
+				return null;
+			}
+			total += Frames.headerSize(payload.size()) + payload.size();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(total);
+		for (ByteString payload : payloads) {
+			Frames.writeLength(buffer, payload.size());
+			payload.copyTo(buffer);
 		}
+		buffer.flip();
+		return buffer;
 	}
 	
 	public ByteString getSchema() {
-		return ByteString.copyFromUtf8(this.schema);
+		return this.schemaBytes;
 	}
 	
 }
@@ -29,6 +29,8 @@ import rst.timing.IntervalType.Interval;
 public class StringRepresentation {
 	
 	private static long origin = -1;
+	private final static int MAX_RETAINED = 1024;
+	private final static ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(StringBuilder::new);
 
 	public static void setIntervalOrigin(long origin){
 		StringRepresentation.origin = origin;
@@ -47,22 +49,9 @@ public class StringRepresentation {
 		if (a == null) {
 			return "null";
 		}
-		StringBuilder b = new StringBuilder("[");
-		b.append(a.getId()).append(":")
-				.append(a.getState()).append(",")
-				.append(a.getPriority()).append(",")
-				.append(a.getPolicy()).append(",")
-				.append(a.getInitiator()).append(",")
-				.append(shortString(a.getSlot()));
-		if (a.getResourceIdsCount() > 0) {
-			b.append(";");
-			for (String s : a.getResourceIdsList()) {
-				b.append(shortString(s)).append(",");
-			}
-			b.deleteCharAt(b.length() - 1);
-		}
-		b.append("]");
-		return b.toString();
+		StringBuilder b = builder();
+		appendShort(a, b);
+		return release(b);
 	}
 
 	/**
@@ -78,23 +67,199 @@ public class StringRepresentation {
 		if (i == null) {
 			return "null";
 		}
-		StringBuilder b = new StringBuilder("(");
-		b.append(i.getBegin().getTime() - (origin < 0 ? currentTimeInMicros() : origin))
-				.append(")-(")
-				.append(i.getEnd().getTime() - (origin < 0 ? currentTimeInMicros() : origin))
-				.append(")");
-		return b.toString();
+		StringBuilder b = builder();
+		appendShort(i, b);
+		return release(b);
 	}
 	
 	/**
 	 * Generates a compact string representation of any object.
 	 * The generated string representation does not contain newlines, so it can be
-	 * used for logging purposes. In particular, the following expression is used
-	 * to generate the representation: {@code (o == null) ? "null" : o.toString().replaceAll("\\s+", " ").trim();}
+	 * used for logging purposes. In particular, the result equals the expression
+	 * {@code (o == null) ? "null" : o.toString().replaceAll("\\s+", " ").trim();}
+	 * but the string is only copied if it actually contains whitespace to remove.
 	 * @param o The object that should be represented.
 	 * @return a short string representation of the given object.
 	 */
 	public static String shortString(Object o) {
-		return (o == null) ? "null" : o.toString().replaceAll("\\s+", " ").trim();
+		if (o == null) {
+			return "null";
+		}
+		String s = o.toString();
+		if (isCompact(s)) {
+			return s;
+		}
+		StringBuilder b = builder();
+		appendShort(s, b);
+		return release(b);
+	}
+
+	/**
+	 * Appends the representation of {@link #shortString(ResourceAllocation)}.
+	 * @param a The allocation that should be represented.
+	 * @param b The builder to append to.
+	 * @return the given builder.
+	 */
+	public static StringBuilder appendShort(ResourceAllocation a, StringBuilder b) {
+		if (a == null) {
+			return b.append("null");
+		}
+		b.append("[").append(a.getId()).append(":")
+				.append(a.getState()).append(",")
+				.append(a.getPriority()).append(",")
+				.append(a.getPolicy()).append(",")
+				.append(a.getInitiator()).append(",");
+		appendShort(a.getSlot(), b);
+		for (int k = 0; k < a.getResourceIdsCount(); k++) {
+			b.append(k == 0 ? ";" : ",");
+			appendShort(a.getResourceIds(k), b);
+		}
+		return b.append("]");
+	}
+
+	/**
+	 * Appends the representation of {@link #shortString(Interval)}. The clock
+	 * is read at most once per interval.
+	 * @param i The interval that should be represented.
+	 * @param b The builder to append to.
+	 * @return the given builder.
+	 */
+	public static StringBuilder appendShort(Interval i, StringBuilder b) {
+		if (i == null) {
+			return b.append("null");
+		}
+		long base = origin < 0 ? currentTimeInMicros() : origin;
+		return b.append("(").append(i.getBegin().getTime() - base)
+				.append(")-(").append(i.getEnd().getTime() - base)
+				.append(")");
+	}
+
+	/**
+	 * Appends the representation of {@link #shortString(Object)} for a
+	 * character sequence.
+	 * @param s The sequence that should be represented.
+	 * @param b The builder to append to.
+	 * @return the given builder.
+	 */
+	public static StringBuilder appendShort(CharSequence s, StringBuilder b) {
+		if (s == null) {
+			return b.append("null");
+		}
+		int start = b.length();
+		boolean space = false;
+		for (int k = 0; k < s.length(); k++) {
+			char c = s.charAt(k);
+			if (isSpace(c)) {
+				if (!space) {
+					b.append(' ');
+				}
+				space = true;
+			} else {
+				b.append(c);
+				space = false;
+			}
+		}
+		int end = b.length();
+		while (end > start && b.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		b.setLength(end);
+		int first = start;
+		while (first < end && b.charAt(first) <= ' ') {
+			first++;
+		}
+		return b.delete(start, first);
+	}
+
+	/**
+	 * Defers {@link #shortString(ResourceAllocation)} until the returned
+	 * object is converted to a string, which a logger only does when a
+	 * record is actually published. Callers guard the log statement with
+	 * {@link java.util.logging.Logger#isLoggable(java.util.logging.Level)}
+	 * so that not even the wrapper is created while the level is disabled.
+	 * @param a The allocation that should be represented.
+	 * @return an object whose {@code toString()} renders the allocation.
+	 */
+	public static Object lazyString(ResourceAllocation a) {
+		return new Object() {
+			@Override
+			public String toString() {
+				return shortString(a);
+			}
+		};
+	}
+
+	/**
+	 * Defers {@link #shortString(Interval)} until the returned object is
+	 * converted to a string. The offset to the current time is therefore
+	 * taken when the record is rendered.
+	 * @param i The interval that should be represented.
+	 * @return an object whose {@code toString()} renders the interval.
+	 */
+	public static Object lazyString(Interval i) {
+		return new Object() {
+			@Override
+			public String toString() {
+				return shortString(i);
+			}
+		};
+	}
+
+	/**
+	 * Defers {@link #shortString(Object)} until the returned object is
+	 * converted to a string.
+	 * @param o The object that should be represented.
+	 * @return an object whose {@code toString()} renders the given object.
+	 */
+	public static Object lazyString(Object o) {
+		return new Object() {
+			@Override
+			public String toString() {
+				return shortString(o);
+			}
+		};
+	}
+
+	private static boolean isCompact(String s) {
+		int len = s.length();
+		if (len > 0 && (s.charAt(0) <= ' ' || s.charAt(len - 1) <= ' ')) {
+			return false;
+		}
+		boolean space = false;
+		for (int k = 0; k < len; k++) {
+			char c = s.charAt(k);
+			if (c == ' ') {
+				if (space) {
+					return false;
+				}
+				space = true;
+			} else if (isSpace(c)) {
+				return false;
+			} else {
+				space = false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Matches the {@code \s} character class of {@link java.util.regex.Pattern}.
+	 */
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\013' || c == '\f' || c == '\r';
+	}
+
+	private static StringBuilder builder() {
+		StringBuilder b = BUILDER.get();
+		b.setLength(0);
+		return b;
+	}
+
+	private static String release(StringBuilder b) {
+		String s = b.toString();
+		if (b.capacity() > MAX_RETAINED) {
+			BUILDER.remove();
+		}
+		return s;
 	}
 }
@@ -28,12 +28,50 @@ import rst.communicationpatterns.TaskStateType.TaskState.State;
  */
 public class TaskStateUtils {
 
+	/**
+	 * Number of serials per state for which payload-less messages are
+	 * precomputed.
+	 */
+	public final static int TEMPLATE_SERIALS = 16;
+
+	private final static State[] STATES = State.values();
+	private final static TaskState[][] TEMPLATES = new TaskState[STATES.length][TEMPLATE_SERIALS + 1];
+
+	static {
+		for (State state : STATES) {
+			for (int serial = 1; serial <= TEMPLATE_SERIALS; serial++) {
+				TEMPLATES[state.ordinal()][serial] = create(state, serial, SerializationService.EMPTY, SerializationService.UTF8);
+			}
+		}
+	}
+
 	public static TaskState build(String state) {
 		return build(State.valueOf(state));
 	}
 
+	/**
+	 * Returns the shared payload-less message for the given state.
+	 *
+	 * @param state the task state.
+	 * @return an immutable message with the default serial of the state.
+	 */
 	public static TaskState build(State state) {
-		return build(state, SerializationService.EMPTY, SerializationService.UTF8);
+		return build(state, serial(state));
+	}
+
+	/**
+	 * Returns a payload-less message for the given state and serial. Messages
+	 * for serials up to {@link #TEMPLATE_SERIALS} are shared.
+	 *
+	 * @param state the task state.
+	 * @param serial the serial of the message.
+	 * @return an immutable message for the given state and serial.
+	 */
+	public static TaskState build(State state, int serial) {
+		if (serial > 0 && serial <= TEMPLATE_SERIALS) {
+			return TEMPLATES[state.ordinal()][serial];
+		}
+		return create(state, serial, SerializationService.EMPTY, SerializationService.UTF8);
 	}
 
 	public static TaskState buildFrom(String state, TaskState original) {
@@ -52,7 +90,7 @@ public class TaskStateUtils {
 		if (payload == null) {
 			return build(state);
 		} else {
-			SerializationService s = new SerializationService(payload.getClass());
+			SerializationService s = SerializationService.forType(payload.getClass());
 			return build(state, s.serialize(payload), s.getSchema());
 		}
 	}
@@ -62,15 +100,40 @@ public class TaskStateUtils {
 	}
 
 	public static TaskState build(State state, ByteString payload, ByteString wireschema) {
-		TaskState.Builder taskBuilder = TaskState.newBuilder();
+		return build(state, serial(state), payload, wireschema);
+	}
+
+	/**
+	 * Builds a message with an explicit serial, reusing the shared templates
+	 * if the payload is empty and the wire schema is the default one.
+	 *
+	 * @param state the task state.
+	 * @param serial the serial of the message.
+	 * @param payload the serialized payload.
+	 * @param wireschema the wire schema of the payload.
+	 * @return an immutable message.
+	 */
+	public static TaskState build(State state, int serial, ByteString payload, ByteString wireschema) {
+		if (payload.isEmpty() && SerializationService.UTF8.equals(wireschema)) {
+			return build(state, serial);
+		}
+		return create(state, serial, payload, wireschema);
+	}
 
+	/**
+	 * Default serial of a state when the task history is unknown, i.e.,
+	 * 1 for INITIATED, 2 for ABORT and the direct replies to INITIATED,
+	 * 3 for FAILED and 4 for COMPLETED.
+	 *
+	 * @param state the task state.
+	 * @return the default serial.
+	 */
+	public static int serial(State state) {
 		int serial = 1;
 		switch (state) {
 			case ABORT:
 				serial++;
 			case INITIATED:
-				taskBuilder.setOrigin(TaskState.Origin.SUBMITTER);
-				taskBuilder.setSerial(serial);
 				break;
 			case COMPLETED:
 				serial++;
@@ -81,16 +144,48 @@ public class TaskStateUtils {
 			case ABORTED:
 			case UPDATE:
 				serial++;
-				taskBuilder.setOrigin(TaskState.Origin.HANDLER);
-				taskBuilder.setSerial(serial);
 				break;
 		}
-		taskBuilder.setState(state);
+		return serial;
+	}
+
+	/**
+	 * Origin of a state, states requested by the submitter are INITIATED and
+	 * ABORT, all others are reported by the handler.
+	 *
+	 * @param state the task state.
+	 * @return the origin of the state.
+	 */
+	public static TaskState.Origin origin(State state) {
+		switch (state) {
+			case INITIATED:
+			case ABORT:
+				return TaskState.Origin.SUBMITTER;
+			default:
+				return TaskState.Origin.HANDLER;
+		}
+	}
 
-		taskBuilder.setPayload(payload);
-		taskBuilder.setWireSchema(wireschema);
+	/**
+	 * Wraps a message so that its payload is decoded only when it is
+	 * accessed, see {@link LazyPayload}.
+	 *
+	 * @param <T> the payload type.
+	 * @param task the message.
+	 * @return a lazy view of the payload.
+	 */
+	public static <T> LazyPayload<T> payload(TaskState task) {
+		return new LazyPayload<>(task);
+	}
 
-		return taskBuilder.build();
+	private static TaskState create(State state, int serial, ByteString payload, ByteString wireschema) {
+		return TaskState.newBuilder().
+				setOrigin(origin(state)).
+				setSerial(serial).
+				setState(state).
+				setPayload(payload).
+				setWireSchema(wireschema).
+				build();
 	}
 
 }
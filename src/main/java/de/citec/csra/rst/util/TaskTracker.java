@@ -0,0 +1,242 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import com.google.protobuf.ByteString;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import rsb.InitializeException;
+import rst.communicationpatterns.TaskStateType.TaskState;
+import rst.communicationpatterns.TaskStateType.TaskState.State;
+import static rst.communicationpatterns.TaskStateType.TaskState.State.*;
+
+/**
+ * Concurrent registry of in-flight tasks that validates state transitions
+ * and assigns serials. Every task is a single atomic word holding its state
+ * and serial, so transitions of different tasks never contend and
+ * transitions of the same task are serialized by compare-and-set. Valid
+ * transitions are:
+ * <ul>
+ * <li>INITIATED to ACCEPTED, REJECTED or ABORT,</li>
+ * <li>ACCEPTED and UPDATE to UPDATE, COMPLETED, FAILED or ABORT,</li>
+ * <li>ABORT to ABORTED, COMPLETED or FAILED.</li>
+ * </ul>
+ * REJECTED, ABORTED, COMPLETED and FAILED are final, tasks are removed from
+ * the registry once they reach one of them. Messages without payload are
+ * taken from the shared templates of {@link TaskStateUtils}.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ * @param <K> the type of the task identifiers.
+ */
+public class TaskTracker<K> {
+
+	private final static State[] STATES = State.values();
+	private final static Map<State, Set<State>> TRANSITIONS = new EnumMap<>(State.class);
+	private final static Set<State> FINAL = EnumSet.of(REJECTED, ABORTED, COMPLETED, FAILED);
+	private final static int STATE_BITS = 8;
+	private final static long STATE_MASK = (1L << STATE_BITS) - 1;
+
+	static {
+		TRANSITIONS.put(INITIATED, EnumSet.of(ACCEPTED, REJECTED, ABORT));
+		TRANSITIONS.put(ACCEPTED, EnumSet.of(UPDATE, COMPLETED, FAILED, ABORT));
+		TRANSITIONS.put(UPDATE, EnumSet.of(UPDATE, COMPLETED, FAILED, ABORT));
+		TRANSITIONS.put(ABORT, EnumSet.of(ABORTED, COMPLETED, FAILED));
+	}
+
+	private final ConcurrentHashMap<K, AtomicLong> tasks;
+
+	public TaskTracker() {
+		this.tasks = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * @param expected the expected number of concurrently tracked tasks.
+	 */
+	public TaskTracker(int expected) {
+		this.tasks = new ConcurrentHashMap<>(expected, 0.75f, Runtime.getRuntime().availableProcessors());
+	}
+
+	public static boolean isValid(State from, State to) {
+		Set<State> next = TRANSITIONS.get(from);
+		return next != null && next.contains(to);
+	}
+
+	public static boolean isFinal(State state) {
+		return FINAL.contains(state);
+	}
+
+	/**
+	 * Starts tracking a task.
+	 *
+	 * @param id the task identifier.
+	 * @return the INITIATED message of the task.
+	 * @throws IllegalStateException if the task is already tracked.
+	 */
+	public TaskState initiate(K id) throws IllegalStateException {
+		return initiate(id, SerializationService.EMPTY, SerializationService.UTF8);
+	}
+
+	public TaskState initiate(K id, Object payload) throws IllegalStateException, InitializeException {
+		if (payload == null) {
+			return initiate(id);
+		}
+		SerializationService s = SerializationService.forType(payload.getClass());
+		return initiate(id, s.serialize(payload), s.getSchema());
+	}
+
+	public TaskState initiate(K id, ByteString payload, ByteString wireschema) throws IllegalStateException {
+		if (tasks.putIfAbsent(id, new AtomicLong(pack(INITIATED, 1))) != null) {
+			throw new IllegalStateException("Task '" + id + "' is already tracked");
+		}
+		return TaskStateUtils.build(INITIATED, 1, payload, wireschema);
+	}
+
+	/**
+	 * Moves a task to the next state and increments its serial.
+	 *
+	 * @param id the task identifier.
+	 * @param next the next state.
+	 * @return the message announcing the next state.
+	 * @throws IllegalStateException if the task is unknown or the transition
+	 * is not valid.
+	 */
+	public TaskState transition(K id, State next) throws IllegalStateException {
+		return transition(id, next, SerializationService.EMPTY, SerializationService.UTF8);
+	}
+
+	public TaskState transition(K id, State next, Object payload) throws IllegalStateException, InitializeException {
+		if (payload == null) {
+			return transition(id, next);
+		}
+		SerializationService s = SerializationService.forType(payload.getClass());
+		return transition(id, next, s.serialize(payload), s.getSchema());
+	}
+
+	public TaskState transition(K id, State next, ByteString payload, ByteString wireschema) throws IllegalStateException {
+		int serial = advance(id, next, 0);
+		return TaskStateUtils.build(next, serial, payload, wireschema);
+	}
+
+	/**
+	 * Applies a message received from the other party of a task. The message
+	 * must describe a valid transition and carry a serial larger than the
+	 * current one, which is then taken over.
+	 *
+	 * @param id the task identifier.
+	 * @param message the received message.
+	 * @return whether the message was applied.
+	 */
+	public boolean apply(K id, TaskState message) {
+		if (message.getState() == INITIATED) {
+			return tasks.putIfAbsent(id, new AtomicLong(pack(INITIATED, message.getSerial()))) == null;
+		}
+		try {
+			advance(id, message.getState(), message.getSerial());
+			return true;
+		} catch (IllegalStateException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param id the task identifier.
+	 * @return the current state of the task or {@code null} if it is not
+	 * tracked.
+	 */
+	public State getState(K id) {
+		AtomicLong task = tasks.get(id);
+		return task == null ? null : state(task.get());
+	}
+
+	/**
+	 * @param id the task identifier.
+	 * @return the current serial of the task or 0 if it is not tracked.
+	 */
+	public int getSerial(K id) {
+		AtomicLong task = tasks.get(id);
+		return task == null ? 0 : serial(task.get());
+	}
+
+	public boolean contains(K id) {
+		return tasks.containsKey(id);
+	}
+
+	/**
+	 * Stops tracking a task regardless of its state.
+	 *
+	 * @param id the task identifier.
+	 * @return the last state of the task or {@code null} if it was not
+	 * tracked.
+	 */
+	public State remove(K id) {
+		AtomicLong task = tasks.remove(id);
+		return task == null ? null : state(task.get());
+	}
+
+	public int size() {
+		return tasks.size();
+	}
+
+	/**
+	 * Atomically moves the task to the next state.
+	 *
+	 * @param serial the serial to take over, or 0 to increment the current
+	 * one.
+	 * @return the new serial of the task.
+	 */
+	private int advance(K id, State next, int serial) {
+		AtomicLong task = tasks.get(id);
+		if (task == null) {
+			throw new IllegalStateException("Task '" + id + "' is not tracked");
+		}
+		while (true) {
+			long word = task.get();
+			State current = state(word);
+			int known = serial(word);
+			if (!isValid(current, next)) {
+				throw new IllegalStateException("Invalid transition of task '" + id + "' from " + current + " to " + next);
+			}
+			int updated = serial == 0 ? known + 1 : serial;
+			if (updated <= known) {
+				throw new IllegalStateException("Outdated serial " + serial + " of task '" + id + "', expected more than " + known);
+			}
+			if (task.compareAndSet(word, pack(next, updated))) {
+				if (isFinal(next)) {
+					tasks.remove(id, task);
+				}
+				return updated;
+			}
+		}
+	}
+
+	private static long pack(State state, int serial) {
+		return ((long) serial << STATE_BITS) | state.ordinal();
+	}
+
+	private static State state(long word) {
+		return STATES[(int) (word & STATE_MASK)];
+	}
+
+	private static int serial(long word) {
+		return (int) (word >>> STATE_BITS);
+	}
+}
@@ -0,0 +1,39 @@
+/* 
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import net.time4j.SystemClock;
+
+/**
+ * Source of the current time in microseconds since the epoch. Use
+ * {@link #PRECISE} for the system clock, {@link CoarseTimeSource} for a
+ * cheap but slightly stale time in tight loops, and
+ * {@link ManualTimeSource} for deterministic tests and benchmarks.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+@FunctionalInterface
+public interface TimeSource {
+
+	/**
+	 * Reads the system clock on every call.
+	 */
+	TimeSource PRECISE = () -> SystemClock.INSTANCE.currentTimeInMicros();
+
+	long currentTimeInMicros();
+}
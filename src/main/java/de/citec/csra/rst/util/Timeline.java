@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2017 Patrick Holthaus
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.citec.csra.rst.util;
+
+import static de.citec.csra.rst.util.PrimitiveIntervals.BEGIN;
+import static de.citec.csra.rst.util.PrimitiveIntervals.END;
+import static de.citec.csra.rst.util.StringRepresentation.lazyString;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import rst.communicationpatterns.ResourceAllocationType.ResourceAllocation;
+import rst.timing.IntervalType.Interval;
+
+/**
+ * Persistent index of the blocking intervals of a single resource. Blocks
+ * are added and removed incrementally as allocations change, and the queries
+ * of {@link IntervalUtils} are answered from the index without rebuilding the
+ * free time for every call. {@code findFirst}, {@code findComplete} and
+ * {@code findRemaining} take logarithmic time in the number of blocks,
+ * {@code findMax} additionally visits the blocks inside the queried range.
+ * <p>
+ * Blocks may overlap, each one has to be removed as often as it was added.
+ * Blocks that ended before the current time are dropped automatically on
+ * every modification. Instances are not thread-safe.
+ *
+ * @author Patrick Holthaus
+ * (<a href=mailto:patrick.holthaus@uni-bielefeld.de>patrick.holthaus@uni-bielefeld.de</a>)
+ */
+public class Timeline {
+
+	private final static Logger LOG = Logger.getLogger(Timeline.class.getName());
+	private final static long NONE = Long.MIN_VALUE;
+
+	/**
+	 * Number of blocks covering the time from each key until the next key.
+	 */
+	private final TreeMap<Long, Integer> coverage = new TreeMap<>();
+	/**
+	 * Disjoint, non-adjacent busy spans mapped from begin to end.
+	 */
+	private final TreeMap<Long, Long> busy = new TreeMap<>();
+	private final long[] result = new long[2];
+	private final PrimitiveIntervals.Spans spans = new PrimitiveIntervals.Spans() {
+
+		@Override
+		public long freeFrom(long time) {
+			Map.Entry<Long, Long> span = busy.floorEntry(time);
+			return (span != null && span.getValue() > time) ? span.getValue() : time;
+		}
+
+		@Override
+		public long busyFrom(long free) {
+			Long next = busy.higherKey(free);
+			return next == null ? Long.MAX_VALUE : next;
+		}
+	};
+	private long horizon = Long.MIN_VALUE;
+	private boolean expire = true;
+	private TimeSource time = IntervalUtils::currentTimeInMicros;
+
+	/**
+	 * Enables or disables dropping expired blocks on modification.
+	 *
+	 * @param expire whether to drop blocks that ended before now.
+	 */
+	public void setAutoExpire(boolean expire) {
+		this.expire = expire;
+	}
+
+	/**
+	 * Selects the time source for expiry and {@code findRemaining}, the
+	 * global one of {@link IntervalUtils} by default.
+	 *
+	 * @param time the time source to use.
+	 */
+	public void setTimeSource(TimeSource time) {
+		this.time = time;
+	}
+
+	public void add(ResourceAllocation allocation) {
+		add(allocation.getSlot());
+	}
+
+	public void remove(ResourceAllocation allocation) {
+		remove(allocation.getSlot());
+	}
+
+	public void add(Interval block) {
+		add(block.getBegin().getTime(), block.getEnd().getTime());
+	}
+
+	public void remove(Interval block) {
+		remove(block.getBegin().getTime(), block.getEnd().getTime());
+	}
+
+	/**
+	 * Adds a blocking interval.
+	 *
+	 * @param begin begin of the block in microseconds.
+	 * @param end end of the block in microseconds.
+	 */
+	public void add(long begin, long end) {
+		if (end <= begin) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Ignoring invalid block: ''{0}''", lazyString(PrimitiveIntervals.toRst(begin, end)));
+			}
+			return;
+		}
+		autoExpire();
+		if (end <= horizon) {
+			return;
+		}
+		shift(begin, end, 1);
+		Map.Entry<Long, Long> prev = busy.floorEntry(begin);
+		if (prev != null && prev.getValue() >= begin) {
+			begin = prev.getKey();
+			end = Math.max(end, prev.getValue());
+		}
+		Iterator<Map.Entry<Long, Long>> it = busy.tailMap(begin, true).entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Long, Long> next = it.next();
+			if (next.getKey() > end) {
+				break;
+			}
+			end = Math.max(end, next.getValue());
+			it.remove();
+		}
+		busy.put(begin, end);
+	}
+
+	/**
+	 * Removes a blocking interval that has been added before.
+	 *
+	 * @param begin begin of the block in microseconds.
+	 * @param end end of the block in microseconds.
+	 */
+	public void remove(long begin, long end) {
+		if (end <= begin) {
+			return;
+		}
+		autoExpire();
+		if (end <= horizon) {
+			return;
+		}
+		if (!covered(begin, end)) {
+			if (LOG.isLoggable(Level.WARNING)) {
+				LOG.log(Level.WARNING, "Ignoring unknown block: ''{0}''", lazyString(PrimitiveIntervals.toRst(begin, end)));
+			}
+			return;
+		}
+		shift(begin, end, -1);
+		Map.Entry<Long, Integer> first = coverage.floorEntry(begin);
+		long free = (first == null || first.getValue() == 0) ? begin : NONE;
+		for (Map.Entry<Long, Integer> e : coverage.subMap(begin, false, end, false).entrySet()) {
+			if (e.getValue() == 0 && free == NONE) {
+				free = e.getKey();
+			} else if (e.getValue() != 0 && free != NONE) {
+				release(free, e.getKey());
+				free = NONE;
+			}
+		}
+		if (free != NONE) {
+			release(free, end);
+		}
+	}
+
+	/**
+	 * Drops all blocks that ended before the given time. Blocks that are
+	 * still active at that time are kept completely.
+	 *
+	 * @param now the current time in microseconds.
+	 */
+	public void expire(long now) {
+		Map.Entry<Long, Long> active = busy.floorEntry(now);
+		long cut = (active != null && active.getValue() > now) ? active.getKey() : now;
+		if (cut > horizon) {
+			busy.headMap(cut, false).clear();
+			coverage.headMap(cut, false).clear();
+			horizon = cut;
+		}
+	}
+
+	public boolean isEmpty() {
+		return busy.isEmpty();
+	}
+
+	public void clear() {
+		busy.clear();
+		coverage.clear();
+	}
+
+	public Interval findFirst(Interval goal, Interval range) {
+		return findFirst(goal.getBegin().getTime(), goal.getEnd().getTime(),
+				range.getBegin().getTime(), range.getEnd().getTime(), result) ? toRst() : null;
+	}
+
+	public Interval findMax(Interval goal, Interval range) {
+		return findMax(goal.getBegin().getTime(), goal.getEnd().getTime(),
+				range.getBegin().getTime(), range.getEnd().getTime(), result) ? toRst() : null;
+	}
+
+	public Interval findComplete(Interval goal, Interval range) {
+		return findComplete(goal.getBegin().getTime(), goal.getEnd().getTime(),
+				range.getBegin().getTime(), range.getEnd().getTime(), result) ? goal : null;
+	}
+
+	public Interval findRemaining(Interval goal) {
+		return findRemaining(goal.getBegin().getTime(), goal.getEnd().getTime(), time.currentTimeInMicros(), result) ? toRst() : null;
+	}
+
+	/**
+	 * @see PrimitiveIntervals#findFirst(long, long, long, long, long[], long[], int, long[])
+	 */
+	public boolean findFirst(long gBegin, long gEnd, long rBegin, long rEnd, long[] result) {
+		return PrimitiveIntervals.findFirst(gBegin, gEnd, rBegin, rEnd, spans, result);
+	}
+
+	/**
+	 * @see PrimitiveIntervals#findMax(long, long, long, long, long[], long[], int, long[])
+	 */
+	public boolean findMax(long gBegin, long gEnd, long rBegin, long rEnd, long[] result) {
+		return PrimitiveIntervals.findMax(gBegin, gEnd, rBegin, rEnd, spans, result);
+	}
+
+	/**
+	 * @see PrimitiveIntervals#findComplete(long, long, long, long, long[], long[], int, long[])
+	 */
+	public boolean findComplete(long gBegin, long gEnd, long rBegin, long rEnd, long[] result) {
+		return PrimitiveIntervals.findComplete(gBegin, gEnd, rBegin, rEnd, spans, result);
+	}
+
+	/**
+	 * @see PrimitiveIntervals#findRemaining(long, long, long, long[], long[], int, long[])
+	 */
+	public boolean findRemaining(long gBegin, long gEnd, long now, long[] result) {
+		return PrimitiveIntervals.findRemaining(gBegin, gEnd, now, spans, result);
+	}
+
+	private boolean covered(long begin, long end) {
+		Map.Entry<Long, Integer> first = coverage.floorEntry(begin);
+		if (first == null || first.getValue() == 0) {
+			return false;
+		}
+		for (Integer count : coverage.subMap(begin, false, end, false).values()) {
+			if (count == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void shift(long begin, long end, int delta) {
+		split(begin);
+		split(end);
+		NavigableMap<Long, Integer> range = coverage.subMap(begin, true, end, false);
+		for (Map.Entry<Long, Integer> e : range.entrySet()) {
+			e.setValue(e.getValue() + delta);
+		}
+		merge(end);
+		merge(begin);
+	}
+
+	private void split(long at) {
+		if (!coverage.containsKey(at)) {
+			Map.Entry<Long, Integer> prev = coverage.lowerEntry(at);
+			coverage.put(at, prev == null ? 0 : prev.getValue());
+		}
+	}
+
+	private void merge(long at) {
+		Integer value = coverage.get(at);
+		if (value != null) {
+			Map.Entry<Long, Integer> prev = coverage.lowerEntry(at);
+			if (prev == null ? value == 0 : prev.getValue().equals(value)) {
+				coverage.remove(at);
+			}
+		}
+	}
+
+	private void release(long begin, long end) {
+		Map.Entry<Long, Long> span = busy.floorEntry(begin);
+		if (span == null || span.getValue() <= begin) {
+			return;
+		}
+		busy.remove(span.getKey());
+		if (span.getKey() < begin) {
+			busy.put(span.getKey(), begin);
+		}
+		if (end < span.getValue()) {
+			busy.put(end, span.getValue());
+		}
+	}
+
+	private void autoExpire() {
+		if (expire) {
+			expire(time.currentTimeInMicros());
+		}
+	}
+
+	private Interval toRst() {
+		return PrimitiveIntervals.toRst(result[BEGIN], result[END]);
+	}
+}
@@ -18,10 +18,16 @@ package de.citec.csra.rst.util;
 
 import com.google.protobuf.Message;
 import com.google.protobuf.TextFormat;
-import static de.citec.csra.rst.util.StringRepresentation.shortString;
+import de.citec.csra.rst.metrics.Counter;
+import de.citec.csra.rst.metrics.Metrics;
+import static de.citec.csra.rst.util.StringRepresentation.lazyString;
 import java.lang.reflect.InvocationTargetException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
-import java.text.ParseException;
+import java.text.ParsePosition;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -30,6 +36,14 @@ import rsb.converter.DefaultConverterRepository;
 import rsb.converter.ProtocolBufferConverter;
 
 /**
+ * Infers typed values from their string descriptions. Strings are tried as
+ * numbers, booleans and rst messages like {@code .rst.timing.Timestamp:{time: 5}}
+ * in this order, other strings are returned as they are. A cheap look at the
+ * first characters decides which of these attempts can succeed at all.
+ * Resolved rst types are cached and their converters are registered once,
+ * complete results are kept in a bounded cache keyed by their description.
+ * Failed conversions are remembered along with the results, so that they are
+ * counted on every call.
  *
  * @author Patrick Holthaus
  */
@@ -37,50 +51,152 @@ public class TypesUtils {
 
 	private final static Logger LOG = Logger.getLogger(TypesUtils.class.getName());
 	private final static Pattern RST = Pattern.compile("^\\.(.*?):\\{(.*)\\}$");
-	
+	private final static int CACHE_SIZE = 1024;
+	private final static Map<String, Object> PARSED = new ConcurrentHashMap<>();
+	private final static Map<String, Counter> FAILURES = new ConcurrentHashMap<>();
+	/**
+	 * Prototypes of resolved rst types. Only types that exist on the class
+	 * path are kept, unknown names from the input are looked up again.
+	 */
+	private final static Map<String, Message> PROTOTYPES = new ConcurrentHashMap<>();
+	private final static ThreadLocal<Numbers> NUMBERS = ThreadLocal.withInitial(Numbers::new);
+
+	private enum Kind {
+		NUMBER, BOOLEAN, RST, STRING
+	}
+
+	/**
+	 * Number format of the current thread along with the symbols a number
+	 * may start with.
+	 */
+	private final static class Numbers {
+
+		final NumberFormat format = NumberFormat.getInstance();
+		final boolean decimal = format instanceof DecimalFormat;
+		final char minus, separator, grouping, nan, infinity;
+
+		Numbers() {
+			DecimalFormatSymbols sym = decimal ? ((DecimalFormat) format).getDecimalFormatSymbols() : DecimalFormatSymbols.getInstance();
+			minus = sym.getMinusSign();
+			separator = sym.getDecimalSeparator();
+			grouping = sym.getGroupingSeparator();
+			nan = sym.getNaN().charAt(0);
+			infinity = sym.getInfinity().charAt(0);
+		}
+
+		boolean mayStart(String dsc) {
+			char first = dsc.charAt(0);
+			if (!decimal || Character.isDigit(first) || first == minus || first == nan || first == infinity) {
+				return true;
+			}
+			int i = 0;
+			while (i < dsc.length() && (dsc.charAt(i) == separator || dsc.charAt(i) == grouping)) {
+				i++;
+			}
+			return i > 0 && i < dsc.length() && Character.isDigit(dsc.charAt(i));
+		}
+	}
+
 	public static Object parse(String dsc) {
 		if (dsc == null) {
 			LOG.log(Level.FINER, "Description is null, returning.");
 			return dsc;
 		}
 
-		try {
-			return NumberFormat.getInstance().parse(dsc);
-		} catch (ParseException ex) {
-			LOG.log(Level.FINER, "Could not infer number from description string ''{0}''.", shortString(dsc));
+		Object parsed = PARSED.get(dsc);
+		if (parsed != null) {
+			Metrics.TYPES_HITS.increment();
+		} else {
+			Metrics.TYPES_MISSES.increment();
+			if (PARSED.size() >= CACHE_SIZE) {
+				PARSED.clear();
+				FAILURES.clear();
+			}
+			parsed = parseUncached(dsc);
+			PARSED.put(dsc, parsed);
 		}
+		if (!FAILURES.isEmpty()) {
+			Counter failure = FAILURES.get(dsc);
+			if (failure != null) {
+				failure.increment();
+			}
+		}
+		return parsed;
+	}
 
-		switch (dsc.toLowerCase()) {
-			case "false":
-				return false;
-			case "true":
-				return true;
+	private static Object parseUncached(String dsc) {
+		Numbers numbers = NUMBERS.get();
+		Kind kind = classify(dsc, numbers);
+		if (kind == Kind.NUMBER) {
+			ParsePosition pos = new ParsePosition(0);
+			Number number = numbers.format.parse(dsc, pos);
+			if (pos.getIndex() > 0) {
+				return number;
+			}
+			if (LOG.isLoggable(Level.FINER)) {
+				LOG.log(Level.FINER, "Could not infer number from description string ''{0}''.", lazyString(dsc));
+			}
+			kind = classifyText(dsc);
+		}
+		switch (kind) {
+			case BOOLEAN:
+				return Boolean.valueOf(dsc);
+			case RST:
+				return parseRst(dsc);
 			default:
-				LOG.log(Level.FINER, "Could not infer boolean from description string ''{0}''.", shortString(dsc));
+				if (LOG.isLoggable(Level.FINER)) {
+					LOG.log(Level.FINER, "Could not infer boolean or rst from description string ''{0}''.", lazyString(dsc));
+				}
+				return dsc;
+		}
+	}
+
+	private static Kind classify(String dsc, Numbers numbers) {
+		if (dsc.isEmpty()) {
+			return Kind.STRING;
+		}
+		if (numbers.mayStart(dsc)) {
+			return Kind.NUMBER;
+		}
+		return classifyText(dsc);
+	}
+
+	private static Kind classifyText(String dsc) {
+		int len = dsc.length();
+		if (len == 4 && dsc.equalsIgnoreCase("true") || len == 5 && dsc.equalsIgnoreCase("false")) {
+			return Kind.BOOLEAN;
 		}
+		if (len > 0 && dsc.charAt(0) == '.' && dsc.charAt(len - 1) == '}') {
+			return Kind.RST;
+		}
+		return Kind.STRING;
+	}
 
-        Matcher matcher = RST.matcher(dsc);
+	private static Object parseRst(String dsc) {
+		Matcher matcher = RST.matcher(dsc);
 		if (matcher.matches()) {
 			try {
-				String rstName =  matcher.group(1);
+				String rstName = matcher.group(1);
 				String typeInfo = matcher.group(2);
-				LOG.log(Level.FINER, "Assuming RST of type ''{0}'' specified as ''{1}''.", new Object[]{rstName, typeInfo});
-
-				String pkg = rstName.substring(0, rstName.lastIndexOf(".") + 1);
-				String clz = rstName.substring(rstName.lastIndexOf(".") + 1);
-				String fqClz = pkg + clz + "Type$" + clz;
+				if (LOG.isLoggable(Level.FINER)) {
+					LOG.log(Level.FINER, "Assuming RST of type ''{0}'' specified as ''{1}''.", new Object[]{rstName, typeInfo});
+				}
 
-				LOG.log(Level.FINER, "Trying to instantiate builder for class ''{0}''.", fqClz);
-
-				Class<?> cls = Class.forName(fqClz);
-				Message.Builder msgBuilder = (Message.Builder) cls.getMethod("newBuilder").invoke(null);
+				Message prototype = PROTOTYPES.computeIfAbsent(rstName, TypesUtils::resolve);
+				if (prototype == null) {
+					FAILURES.put(dsc, Metrics.TYPES_UNRESOLVED);
+					LOG.log(Level.FINER, "Unable to parse string ''{0}'' as an rst data type (unknown type), returning original definiton.", dsc);
+					return dsc;
+				}
+				Message.Builder msgBuilder = prototype.newBuilderForType();
 				TextFormat.merge(typeInfo, msgBuilder);
-				
 				Message msg = msgBuilder.build();
-				DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(msg));
-				LOG.log(Level.FINER, "Loaded default converter for message ''{0}''.", shortString(msg));
+				if (LOG.isLoggable(Level.FINER)) {
+					LOG.log(Level.FINER, "Parsed message ''{0}''.", lazyString(msg));
+				}
 				return msg;
-			} catch (StringIndexOutOfBoundsException | ClassNotFoundException | NoSuchMethodException | SecurityException | IllegalAccessException | InvocationTargetException | TextFormat.ParseException e) {
+			} catch (TextFormat.ParseException e) {
+				FAILURES.put(dsc, Metrics.CONVERSION_FAILURES);
 				LOG.log(Level.FINER, "Unable to parse string ''{0}'' as an rst data type ({1}), returning original definiton.", new Object[]{dsc, e});
 				return dsc;
 			}
@@ -89,4 +205,30 @@ public class TypesUtils {
 			return dsc;
 		}
 	}
+
+	/**
+	 * Looks up the message class for an rst type name and registers a
+	 * converter for it.
+	 *
+	 * @return the default instance of the type, or {@code null} if there is
+	 * no such type.
+	 */
+	private static Message resolve(String rstName) {
+		try {
+			String pkg = rstName.substring(0, rstName.lastIndexOf(".") + 1);
+			String clz = rstName.substring(rstName.lastIndexOf(".") + 1);
+			String fqClz = pkg + clz + "Type$" + clz;
+
+			LOG.log(Level.FINER, "Trying to instantiate builder for class ''{0}''.", fqClz);
+
+			Class<?> cls = Class.forName(fqClz);
+			Message prototype = (Message) cls.getMethod("getDefaultInstance").invoke(null);
+			DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(prototype));
+			LOG.log(Level.FINER, "Loaded default converter for message type ''{0}''.", rstName);
+			return prototype;
+		} catch (StringIndexOutOfBoundsException | ClassNotFoundException | NoSuchMethodException | SecurityException | IllegalAccessException | InvocationTargetException | ClassCastException e) {
+			LOG.log(Level.FINER, "Unable to resolve rst data type ''{0}'' ({1}).", new Object[]{rstName, e});
+			return null;
+		}
+	}
 }